@@ -2,8 +2,10 @@ package org.example.indexcurrency;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class IndexCurrencyApplication {
     public static void main(String[] args) {
         SpringApplication.run(IndexCurrencyApplication.class, args);
@@ -0,0 +1,42 @@
+package org.example.indexcurrency.controller;
+
+import org.example.indexcurrency.service.CacheIntegrityService;
+import org.example.indexcurrency.service.CacheWarmupService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Read-only view of cache housekeeping. {@code /api/cache/repairs} lists the gaps the background integrity
+ * pass has filled in, newest first; {@code /api/cache/warmup} reports the startup warm-up (state, duration,
+ * series preloaded) and {@code /api/cache/index} the cached series it indexed.
+ */
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    private final CacheIntegrityService integrityService;
+    private final CacheWarmupService warmupService;
+
+    public CacheController(CacheIntegrityService integrityService, CacheWarmupService warmupService) {
+        this.integrityService = integrityService;
+        this.warmupService = warmupService;
+    }
+
+    @GetMapping("/repairs")
+    public List<CacheIntegrityService.GapRepair> getRepairs() {
+        return integrityService.recentRepairs();
+    }
+
+    @GetMapping("/warmup")
+    public CacheWarmupService.Status getWarmup() {
+        return warmupService.status();
+    }
+
+    @GetMapping("/index")
+    public List<CacheWarmupService.IndexEntry> getIndex() {
+        return warmupService.index();
+    }
+}
@@ -1,12 +1,27 @@
 package org.example.indexcurrency.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.example.indexcurrency.model.ChartData;
+import org.example.indexcurrency.service.BinarySeriesFormat;
+import org.example.indexcurrency.service.ChartResponseCache;
 import org.example.indexcurrency.service.CsvCacheService;
+import org.example.indexcurrency.service.DownsamplingService;
+import org.example.indexcurrency.service.FxService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -16,25 +31,125 @@ public class ChartController {
     private static final Logger log = LoggerFactory.getLogger(ChartController.class);
 
     private final CsvCacheService cacheService;
+    private final DownsamplingService downsamplingService;
+    private final ChartResponseCache responseCache;
+    private final FxService fxService;
+    private final ObjectMapper objectMapper;
 
-    public ChartController(CsvCacheService cacheService) {
+    public ChartController(CsvCacheService cacheService, DownsamplingService downsamplingService,
+                           ChartResponseCache responseCache, FxService fxService, ObjectMapper objectMapper) {
         this.cacheService = cacheService;
+        this.downsamplingService = downsamplingService;
+        this.responseCache = responseCache;
+        this.fxService = fxService;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Chart in Yahoo's JSON shape. The response holds only bars within {@code range} back from now, or within
+     * the explicit {@code from}/{@code to} dates (ISO {@code yyyy-MM-dd}, inclusive, UTC) when given. With
+     * {@code maxPoints} the window is LTTB-downsampled for display; omit it for full-resolution data. With
+     * {@code currency} every price is converted to that currency ({@link FxService}) before downsampling.
+     *
+     * <p>With {@code Accept: }{@value BinarySeriesFormat#MEDIA_TYPE} the response is the compact
+     * {@link BinarySeriesFormat} instead of JSON. Encoded responses are cached ({@link ChartResponseCache}) and carry a strong ETag and the series'
+     * Last-Modified; a matching {@code If-None-Match} gets a 304, and gzip is served when accepted.
+     */
     @GetMapping("/{symbol}")
-    public ResponseEntity<Map<String, Object>> getChart(
+    public ResponseEntity<?> getChart(
             @PathVariable String symbol,
             @RequestParam(defaultValue = "5y") String range,
-            @RequestParam(defaultValue = "1d") String interval) {
-        log.info("Chart request: symbol={}, range={}, interval={}", symbol, range, interval);
+            @RequestParam(defaultValue = "1d") String interval,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) String currency,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("Chart request: symbol={}, range={}, interval={}, from={}, to={}, maxPoints={}, currency={}",
+                symbol, range, interval, from, to, maxPoints, currency);
         try {
-            ChartData data = cacheService.getChartData(symbol, range, interval);
-            return ResponseEntity.ok(data.toYahooFormat());
+            String target = currency == null || currency.isBlank() ? null : currency.trim().toUpperCase(Locale.US);
+            if (target != null && !FxService.CURRENCIES.contains(target)) {
+                throw new IllegalArgumentException("Unsupported currency: " + currency);
+            }
+            Long fromTs = from != null ? parseDate(from).atStartOfDay(ZoneOffset.UTC).toEpochSecond() : null;
+            Long toTs = to != null ? parseDate(to).plusDays(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond() - 1 : null;
+            boolean binary = accept != null && accept.contains(BinarySeriesFormat.MEDIA_TYPE);
+            String cacheKey = ChartResponseCache.key(symbol, range, interval, from, to, maxPoints, target, binary);
+            ChartResponseCache.Encoded encoded = responseCache.get(cacheKey);
+            if (encoded == null) {
+                ChartData data = cacheService.getChartData(symbol, range, interval, fromTs, toTs);
+                long freshUntil = cacheService.freshUntilMillis(data, interval);
+                if (target != null) data = fxService.convert(data, target);
+                if (maxPoints != null) data = downsamplingService.downsample(data, interval, maxPoints);
+                // Unversioned, or a stale series the refresh could not update: nothing worth caching.
+                if (freshUntil <= System.currentTimeMillis()) {
+                    return binary ? streamBinary(objectMapper, data) : streamChart(objectMapper, data);
+                }
+                encoded = responseCache.put(cacheKey, data, freshUntil, binary);
+            } else {
+                // Served without reading the series: still count it towards the warm-up hot set.
+                cacheService.recordRequest(symbol, interval);
+            }
+            return cachedResponse(encoded, ifNoneMatch, acceptsGzip(acceptEncoding),
+                    binary ? MediaType.parseMediaType(BinarySeriesFormat.MEDIA_TYPE) : MediaType.APPLICATION_JSON);
+        } catch (IllegalArgumentException e) {
+            // Errors are JSON even when the binary format was requested.
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(errorBody(e.getMessage()));
         } catch (Exception e) {
             log.error("Failed to get chart for {}: {}", symbol, e.getMessage());
-            return ResponseEntity.status(502).body(Map.of(
-                    "chart", Map.of("result", new Object[0], "error", Map.of("description", e.getMessage()))
-            ));
+            return ResponseEntity.status(502).contentType(MediaType.APPLICATION_JSON).body(errorBody(e.getMessage()));
         }
     }
+
+    /**
+     * Stream {@code data} as Yahoo-format JSON ({@link ChartData#writeYahooFormat}) straight to the response,
+     * without building the {@link ChartData#toYahooFormat()} map tree first.
+     */
+    static ResponseEntity<StreamingResponseBody> streamChart(ObjectMapper objectMapper, ChartData data) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator g = objectMapper.getFactory().createGenerator(out)) {
+                data.writeYahooFormat(g);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> streamBinary(ObjectMapper objectMapper, ChartData data) {
+        StreamingResponseBody body = out -> BinarySeriesFormat.write(objectMapper, data, out);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(BinarySeriesFormat.MEDIA_TYPE)).body(body);
+    }
+
+    private static ResponseEntity<?> cachedResponse(ChartResponseCache.Encoded encoded, String ifNoneMatch,
+                                                    boolean gzip, MediaType contentType) {
+        String etag = gzip ? encoded.gzipEtag() : encoded.etag();
+        boolean notModified = ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"));
+        ResponseEntity.BodyBuilder builder = ResponseEntity
+                .status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                .eTag(etag)
+                .lastModified(encoded.lastModified())
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING + ", " + HttpHeaders.ACCEPT);
+        if (notModified) return builder.build();
+        if (gzip) builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return builder.contentType(contentType).body(gzip ? encoded.gzip() : encoded.body());
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+    }
+
+    private static LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date (expected yyyy-MM-dd): " + date);
+        }
+    }
+
+    private static Map<String, Object> errorBody(String description) {
+        return Map.of("chart", Map.of("result", new Object[0], "error", Map.of("description", description)));
+    }
 }
@@ -0,0 +1,53 @@
+package org.example.indexcurrency.controller;
+
+import org.example.indexcurrency.service.CorrelationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Correlation matrices computed server-side by {@link CorrelationService}.
+ *
+ * <p>{@code /api/correlation-matrix?symbols=SPY,AGG,GLD&months=36&currency=SEK&method=spearman} returns the
+ * N&times;N correlations of the symbols' daily returns in {@code currency} over the last {@code months}, by
+ * {@code method} {@code pearson} (the default, as the frontend's correlation column) or {@code spearman} (rank
+ * correlation). Rolling correlations against one benchmark are served by {@code /api/rolling}.
+ */
+@RestController
+@RequestMapping("/api/correlation-matrix")
+public class CorrelationController {
+
+    private static final Logger log = LoggerFactory.getLogger(CorrelationController.class);
+
+    private final CorrelationService correlationService;
+
+    public CorrelationController(CorrelationService correlationService) {
+        this.correlationService = correlationService;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getCorrelationMatrix(
+            @RequestParam String symbols,
+            @RequestParam(defaultValue = "36") int months,
+            @RequestParam(defaultValue = "USD") String currency,
+            @RequestParam(defaultValue = "pearson") String method) {
+        log.info("Correlation matrix request: symbols={}, months={}, currency={}, method={}", symbols, months,
+                currency, method);
+        try {
+            List<String> syms = PortfolioController.parseSymbols(symbols);
+            if (months < 1) throw new IllegalArgumentException("months must be at least 1");
+            return ResponseEntity.ok(correlationService.correlations(syms, PortfolioController.cutoffMonthsAgo(months),
+                    currency.toUpperCase(Locale.US), CorrelationService.Method.parse(method)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to compute correlations for {}: {}", symbols, e.getMessage());
+            return ResponseEntity.status(502).body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.indexcurrency.controller;
+
+import org.example.indexcurrency.service.AppDefaultsService;
+import org.example.indexcurrency.service.MetricViewService;
+import org.example.indexcurrency.service.MetricsEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Risk/performance metrics computed server-side by {@link MetricsEngine}.
+ *
+ * <p>{@code /api/metrics?symbols=SPY,AGG&months=36&currency=SEK} returns, per symbol, the performance,
+ * volatility, Sharpe, Sortino, excess kurtosis, ulcer index and UPI of its daily returns in {@code currency} over
+ * the last {@code months}, or {@code null} for a symbol without history covering the window. The risk-free rate
+ * is {@code riskFreeRate} (annual percent) when given, else the currency's default from
+ * {@code app-defaults.properties}, else 0.
+ *
+ * <p>{@code /api/metrics/history?symbols=SPY,AGG} returns each symbol's full-history metrics and calendar-year
+ * returns in its own currency, against its currency's default risk-free rate unless {@code riskFreeRate} is given.
+ * They come from views {@link MetricViewService} keeps up to date incrementally as the series are refreshed.
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsController.class);
+
+    private final MetricsEngine metricsEngine;
+    private final MetricViewService metricViews;
+    private final AppDefaultsService appDefaults;
+
+    public MetricsController(MetricsEngine metricsEngine, MetricViewService metricViews,
+                             AppDefaultsService appDefaults) {
+        this.metricsEngine = metricsEngine;
+        this.metricViews = metricViews;
+        this.appDefaults = appDefaults;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getMetrics(
+            @RequestParam String symbols,
+            @RequestParam(defaultValue = "36") int months,
+            @RequestParam(defaultValue = "USD") String currency,
+            @RequestParam(required = false) Double riskFreeRate) {
+        log.info("Metrics request: symbols={}, months={}, currency={}, riskFreeRate={}", symbols, months, currency,
+                riskFreeRate);
+        try {
+            List<String> syms = PortfolioController.parseSymbols(symbols);
+            if (months < 1) throw new IllegalArgumentException("months must be at least 1");
+            String cur = currency.toUpperCase(Locale.US);
+            double rf = riskFreeRate != null ? riskFreeRate : appDefaults.riskFreeRate(cur);
+            long cutoff = PortfolioController.cutoffMonthsAgo(months);
+            Map<String, MetricsEngine.Metrics> metrics = new LinkedHashMap<>();
+            for (String symbol : syms) metrics.put(symbol, metricsEngine.metrics(symbol, cutoff, cur, rf));
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("currency", cur);
+            body.put("months", months);
+            body.put("riskFreeRate", rf);
+            body.put("metrics", metrics);
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to compute metrics for {}: {}", symbols, e.getMessage());
+            return ResponseEntity.status(502).body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @GetMapping("/history")
+    public ResponseEntity<?> getHistory(
+            @RequestParam String symbols,
+            @RequestParam(required = false) Double riskFreeRate) {
+        log.info("Metric history request: symbols={}, riskFreeRate={}", symbols, riskFreeRate);
+        try {
+            List<String> syms = PortfolioController.parseSymbols(symbols);
+            Map<String, MetricViewService.HistoryView> views = new LinkedHashMap<>();
+            for (String symbol : syms) {
+                views.put(symbol, metricViews.history(symbol, riskFreeRate, appDefaults::riskFreeRate));
+            }
+            return ResponseEntity.ok(Map.of("history", views));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to compute metric history for {}: {}", symbols, e.getMessage());
+            return ResponseEntity.status(502).body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.example.indexcurrency.controller;
+
+import org.example.indexcurrency.model.RebalanceFrequency;
+import org.example.indexcurrency.service.PortfolioOptimizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Portfolio optimization jobs run by {@link PortfolioOptimizer}.
+ *
+ * <p>{@code POST /api/optimize} with a JSON body such as
+ * {@code {"symbols":["SPY","AGG"],"bounds":{"SPY":[20,80]},"totalBounds":[0,100],"cashRate":2,"months":36,
+ * "currency":"SEK","rebalance":"monthly","objective":{"perf":75,"vol":0,"sortino":25,"upi":0},
+ * "riskFreeRate":2.5,"top":10,"method":"auto"}} queues a job and returns its status (202). Omitted bounds default
+ * to 0&ndash;100, {@code riskFreeRate} is the annual percent the Sortino and UPI measure excess return against, and
+ * {@code method} is {@code grid}, {@code continuous} or {@code auto} (grid while it is small enough). Then
+ * {@code GET /api/optimize/{id}/events} streams the job's events over SSE, {@code GET /api/optimize/{id}}
+ * polls its status and {@code DELETE /api/optimize/{id}} cancels it. While {@code optimizer.max-pending} jobs
+ * are queued or running, further submissions are refused with 503.
+ */
+@RestController
+@RequestMapping("/api/optimize")
+public class OptimizerController {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimizerController.class);
+    private static final long EVENTS_TIMEOUT_MILLIS = 30 * 60_000L;
+
+    public record OptimizeRequest(List<String> symbols, Map<String, double[]> bounds, double[] totalBounds,
+                                  double cashRate, Integer months, String currency, String rebalance,
+                                  PortfolioOptimizer.Objective objective, double riskFreeRate, Integer top,
+                                  String method) {}
+
+    private final PortfolioOptimizer optimizer;
+
+    public OptimizerController(PortfolioOptimizer optimizer) {
+        this.optimizer = optimizer;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestBody OptimizeRequest request) {
+        log.info("Optimize request: symbols={}, currency={}, months={}, rebalance={}, method={}", request.symbols(),
+                request.currency(), request.months(), request.rebalance(), request.method());
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(optimizer.submit(toSpec(request)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (PortfolioOptimizer.TooManyJobs e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> status(@PathVariable String id) {
+        PortfolioOptimizer.Status status = optimizer.status(id);
+        if (status == null) return ResponseEntity.status(404).body(Map.of("error", "Unknown job: " + id));
+        return ResponseEntity.ok(status);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancel(@PathVariable String id) {
+        PortfolioOptimizer.Status status = optimizer.cancel(id);
+        if (status == null) return ResponseEntity.status(404).body(Map.of("error", "Unknown job: " + id));
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * The job's events as SSE: a {@code status} event first, then {@code progress}, {@code top} and finally one of
+     * {@code result}, {@code failed} or {@code cancelled}, each carrying the job status. The stream ends after the
+     * final event; an unknown job gets a single {@code failed} event.
+     */
+    @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable String id) {
+        SseEmitter emitter = new SseEmitter(EVENTS_TIMEOUT_MILLIS);
+        AtomicBoolean closed = new AtomicBoolean();
+        Consumer<PortfolioOptimizer.Event> listener = event -> {
+            if (closed.get()) return;
+            send(emitter, event.name(), event.data());
+            if (event.terminal() && closed.compareAndSet(false, true)) emitter.complete();
+        };
+        emitter.onCompletion(() -> optimizer.unsubscribe(id, listener));
+        emitter.onTimeout(() -> optimizer.unsubscribe(id, listener));
+
+        PortfolioOptimizer.Status status = optimizer.subscribe(id, listener);
+        if (status == null) {
+            send(emitter, "failed", Map.of("error", "Unknown job: " + id));
+            emitter.complete();
+            return emitter;
+        }
+        String terminal = switch (status.state()) {
+            case "done" -> "result";
+            case "failed", "cancelled" -> status.state();
+            default -> null;
+        };
+        if (terminal != null) {
+            listener.accept(new PortfolioOptimizer.Event(terminal, status));
+        } else {
+            send(emitter, "status", status);
+        }
+        return emitter;
+    }
+
+    private static void send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static PortfolioOptimizer.Spec toSpec(OptimizeRequest request) {
+        if (request.symbols() == null) throw new IllegalArgumentException("No symbols");
+        List<String> symbols = request.symbols().stream().map(String::trim).filter(s -> !s.isEmpty()).toList();
+        double[] lower = new double[symbols.size()], upper = new double[symbols.size()];
+        for (int s = 0; s < symbols.size(); s++) {
+            double[] b = request.bounds() == null ? null : request.bounds().get(symbols.get(s));
+            if (b != null && b.length != 2) {
+                throw new IllegalArgumentException("Bounds for " + symbols.get(s) + " must be [min, max]");
+            }
+            lower[s] = b == null ? 0 : b[0];
+            upper[s] = b == null ? 100 : b[1];
+        }
+        double[] total = request.totalBounds() == null ? new double[]{0, 100} : request.totalBounds();
+        if (total.length != 2) throw new IllegalArgumentException("totalBounds must be [min, max]");
+        int months = request.months() == null ? 36 : request.months();
+        if (months < 1) throw new IllegalArgumentException("months must be at least 1");
+        String currency = request.currency() == null ? "USD" : request.currency().toUpperCase(Locale.US);
+        RebalanceFrequency rebalance = RebalanceFrequency.parse(request.rebalance() == null ? "daily"
+                : request.rebalance());
+        PortfolioOptimizer.Objective objective = request.objective() != null ? request.objective()
+                : new PortfolioOptimizer.Objective(75, 0, 25, 0);
+        return new PortfolioOptimizer.Spec(symbols, lower, upper, total[0], total[1], request.cashRate(),
+                PortfolioController.cutoffMonthsAgo(months), currency, rebalance, objective, request.riskFreeRate(),
+                request.top() == null ? 10 : request.top(),
+                PortfolioOptimizer.Method.parse(request.method() == null ? "auto" : request.method()));
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.indexcurrency.controller;
+
+import org.example.indexcurrency.model.RebalanceFrequency;
+import org.example.indexcurrency.service.PortfolioEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Portfolio analytics computed server-side by {@link PortfolioEngine}.
+ *
+ * <p>{@code /api/portfolio/returns?symbols=SPY,AGG&weights=60,30&cashRate=2&months=36&currency=SEK&rebalance=monthly}
+ * returns the daily portfolio returns with the timestamp each ends on, like the frontend's
+ * {@code getPortfolioDailyReturns}. Weights are percent per symbol, the remainder is cash at {@code cashRate}
+ * percent a year; {@code rebalance} is {@code daily}, {@code monthly}, {@code quarterly} or {@code yearly}.
+ */
+@RestController
+@RequestMapping("/api/portfolio")
+public class PortfolioController {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioController.class);
+
+    private final PortfolioEngine portfolioEngine;
+
+    public PortfolioController(PortfolioEngine portfolioEngine) {
+        this.portfolioEngine = portfolioEngine;
+    }
+
+    @GetMapping("/returns")
+    public ResponseEntity<?> getReturns(
+            @RequestParam String symbols,
+            @RequestParam String weights,
+            @RequestParam(defaultValue = "0") double cashRate,
+            @RequestParam(defaultValue = "36") int months,
+            @RequestParam(defaultValue = "USD") String currency,
+            @RequestParam(defaultValue = "daily") String rebalance) {
+        log.info("Portfolio returns request: symbols={}, weights={}, cashRate={}, months={}, currency={}, "
+                + "rebalance={}", symbols, weights, cashRate, months, currency, rebalance);
+        try {
+            List<String> syms = parseSymbols(symbols);
+            double[] w = parseWeights(weights);
+            RebalanceFrequency frequency = RebalanceFrequency.parse(rebalance);
+            if (months < 1) throw new IllegalArgumentException("months must be at least 1");
+            PortfolioEngine.PortfolioReturns result = portfolioEngine.dailyReturns(syms, w, cashRate,
+                    cutoffMonthsAgo(months), currency.toUpperCase(Locale.US), frequency);
+            if (result == null) {
+                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("error",
+                        "Not every symbol has convertible history covering the last " + months + " months"));
+            }
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to compute portfolio returns for {}: {}", symbols, e.getMessage());
+            return ResponseEntity.status(502).body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /** The frontend's {@code monthsAgo}: now minus whole calendar months, in epoch seconds. */
+    static long cutoffMonthsAgo(int months) {
+        return ZonedDateTime.now(ZoneOffset.UTC).minusMonths(months).toEpochSecond();
+    }
+
+    static List<String> parseSymbols(String symbols) {
+        List<String> out = Arrays.stream(symbols.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        if (out.isEmpty()) throw new IllegalArgumentException("No symbols");
+        if (out.stream().distinct().count() != out.size()) throw new IllegalArgumentException("Duplicate symbols");
+        return out;
+    }
+
+    static double[] parseWeights(String weights) {
+        try {
+            return Arrays.stream(weights.split(",")).map(String::trim).mapToDouble(Double::parseDouble).toArray();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid weights: " + weights);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.indexcurrency.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.indexcurrency.model.ChartData;
+import org.example.indexcurrency.model.ResamplePeriod;
+import org.example.indexcurrency.service.CsvCacheService;
+import org.example.indexcurrency.service.FxService;
+import org.example.indexcurrency.service.ResamplingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Cached daily series resampled to calendar periods at {@code /api/resample/{symbol}?period=M&how=ohlc}.
+ * {@code period} is a {@link ResamplePeriod} code ({@code W}, {@code W-WED}, {@code M}, {@code Q}, {@code Y},
+ * {@code Y-JUN}, ...). {@code how} is {@code ohlc}, {@code first} or {@code last} for bars in the same Yahoo
+ * shape as {@code /api/chart}, or {@code returns} for period-over-period adjClose returns. With {@code currency}
+ * the daily bars are converted to that currency ({@link FxService}) before resampling.
+ */
+@RestController
+@RequestMapping("/api/resample")
+public class ResampleController {
+
+    private static final Logger log = LoggerFactory.getLogger(ResampleController.class);
+
+    private final CsvCacheService cacheService;
+    private final ResamplingService resamplingService;
+    private final FxService fxService;
+    private final ObjectMapper objectMapper;
+
+    public ResampleController(CsvCacheService cacheService, ResamplingService resamplingService,
+                              FxService fxService, ObjectMapper objectMapper) {
+        this.cacheService = cacheService;
+        this.resamplingService = resamplingService;
+        this.fxService = fxService;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping("/{symbol}")
+    public ResponseEntity<?> resample(
+            @PathVariable String symbol,
+            @RequestParam(defaultValue = "M") String period,
+            @RequestParam(defaultValue = "ohlc") String how,
+            @RequestParam(defaultValue = "max") String range,
+            @RequestParam(required = false) String currency) {
+        log.info("Resample request: symbol={}, period={}, how={}, range={}, currency={}", symbol, period, how, range,
+                currency);
+        try {
+            ResamplePeriod p = ResamplePeriod.parse(period);
+            boolean returns = "returns".equalsIgnoreCase(how);
+            ResamplingService.Aggregation aggregation = returns ? null : ResamplingService.Aggregation.parse(how);
+            ChartData daily = cacheService.getChartData(symbol, range, "1d");
+            if (currency != null) daily = fxService.convert(daily, currency.trim().toUpperCase(Locale.US));
+            if (returns) return ResponseEntity.ok(resamplingService.returns(daily, p));
+            return ChartController.streamChart(objectMapper, resamplingService.resample(daily, p, aggregation));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to resample {}: {}", symbol, e.getMessage());
+            return ResponseEntity.status(502).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.indexcurrency.controller;
+
+import org.example.indexcurrency.model.RebalanceFrequency;
+import org.example.indexcurrency.service.AppDefaultsService;
+import org.example.indexcurrency.service.RollingAnalytics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rolling-window analytics computed server-side by {@link RollingAnalytics}.
+ *
+ * <p>{@code /api/rolling?symbols=SPY&benchmark=^GSPC&window=1y&months=120&currency=SEK} returns the rolling
+ * volatility, Sharpe ratio, drawdown, beta and correlation curves of a ticker over the last {@code months}. With
+ * {@code weights} (percent per symbol, plus {@code cashRate} and {@code rebalance} as for
+ * {@code /api/portfolio/returns}) the curves are for that portfolio. {@code window} is a number of trading days
+ * or years ({@code 1y}, {@code 3y}); {@code riskFreeRate} defaults as for {@code /api/metrics}.
+ */
+@RestController
+@RequestMapping("/api/rolling")
+public class RollingController {
+
+    private static final Logger log = LoggerFactory.getLogger(RollingController.class);
+
+    private final RollingAnalytics rollingAnalytics;
+    private final AppDefaultsService appDefaults;
+
+    public RollingController(RollingAnalytics rollingAnalytics, AppDefaultsService appDefaults) {
+        this.rollingAnalytics = rollingAnalytics;
+        this.appDefaults = appDefaults;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getRolling(
+            @RequestParam String symbols,
+            @RequestParam(required = false) String weights,
+            @RequestParam(defaultValue = "0") double cashRate,
+            @RequestParam(defaultValue = "daily") String rebalance,
+            @RequestParam(required = false) String benchmark,
+            @RequestParam(defaultValue = "1y") String window,
+            @RequestParam(defaultValue = "120") int months,
+            @RequestParam(defaultValue = "USD") String currency,
+            @RequestParam(required = false) Double riskFreeRate) {
+        log.info("Rolling request: symbols={}, weights={}, benchmark={}, window={}, months={}, currency={}",
+                symbols, weights, benchmark, window, months, currency);
+        try {
+            List<String> syms = PortfolioController.parseSymbols(symbols);
+            if (months < 1) throw new IllegalArgumentException("months must be at least 1");
+            String cur = currency.toUpperCase(Locale.US);
+            double rf = riskFreeRate != null ? riskFreeRate : appDefaults.riskFreeRate(cur);
+            double[] w = weights == null ? null : PortfolioController.parseWeights(weights);
+            String bench = benchmark == null || benchmark.isBlank() ? null : benchmark.trim();
+            RollingAnalytics.Spec spec = new RollingAnalytics.Spec(syms, w, cashRate,
+                    RebalanceFrequency.parse(rebalance), bench, parseWindow(window),
+                    PortfolioController.cutoffMonthsAgo(months), cur, rf);
+            RollingAnalytics.RollingCurves curves = rollingAnalytics.rolling(spec);
+            if (curves == null) {
+                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("error",
+                        "Not enough convertible history for a " + window + " window over the last " + months
+                                + " months"));
+            }
+            return ResponseEntity.ok(curves);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to compute rolling analytics for {}: {}", symbols, e.getMessage());
+            return ResponseEntity.status(502).body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /** Trading days in {@code window}: a day count, or years such as {@code 1y} (252 days each). */
+    static int parseWindow(String window) {
+        String w = window.trim().toLowerCase(Locale.US);
+        try {
+            if (w.endsWith("y")) return Integer.parseInt(w.substring(0, w.length() - 1)) * 252;
+            return Integer.parseInt(w);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid window (expected days or years, e.g. 252 or 1y): " + window);
+        }
+    }
+}
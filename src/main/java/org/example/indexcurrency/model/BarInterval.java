@@ -0,0 +1,64 @@
+package org.example.indexcurrency.model;
+
+import java.util.Locale;
+
+/**
+ * Chart bar intervals accepted by {@code /api/chart}, using Yahoo's interval codes. Only three intraday tiers
+ * ({@code 1m}, {@code 5m}, {@code 1h}) and the daily series are actually fetched and cached; every other
+ * interval is rolled up server-side from the finest stored tier that divides it, so switching chart resolution
+ * never triggers a new upstream download.
+ *
+ * <p>Intraday tiers keep a bounded window matching how far back Yahoo serves that resolution (7 days of 1m,
+ * 60 days of 5m, 730 days of 1h); older bars are dropped on every write.
+ */
+public enum BarInterval {
+    ONE_MINUTE("1m", 60, null, 7),
+    TWO_MINUTES("2m", 120, ONE_MINUTE, 0),
+    FIVE_MINUTES("5m", 300, null, 60),
+    FIFTEEN_MINUTES("15m", 900, FIVE_MINUTES, 0),
+    THIRTY_MINUTES("30m", 1800, FIVE_MINUTES, 0),
+    NINETY_MINUTES("90m", 5400, FIVE_MINUTES, 0),
+    ONE_HOUR("1h", 3600, null, 730),
+    SIXTY_MINUTES("60m", 3600, ONE_HOUR, 0),
+    DAILY("1d", 86400, null, 0),
+    FIVE_DAYS("5d", 5 * 86400, DAILY, 0),
+    WEEKLY("1wk", 7 * 86400, DAILY, 0),
+    MONTHLY("1mo", 30 * 86400, DAILY, 0),
+    QUARTERLY("3mo", 91 * 86400, DAILY, 0);
+
+    private final String code;
+    private final long seconds;
+    private final BarInterval rollupFrom;
+    private final int retentionDays;
+
+    BarInterval(String code, long seconds, BarInterval rollupFrom, int retentionDays) {
+        this.code = code;
+        this.seconds = seconds;
+        this.rollupFrom = rollupFrom;
+        this.retentionDays = retentionDays;
+    }
+
+    /** Yahoo's code for this interval, e.g. {@code 1h}. */
+    public String code() { return code; }
+
+    /** Nominal bar length; calendar intervals (week/month/quarter) are approximate. */
+    public long seconds() { return seconds; }
+
+    /** The interval that is fetched and cached to serve this one (itself for stored tiers). */
+    public BarInterval storedTier() { return rollupFrom != null ? rollupFrom : this; }
+
+    public boolean isIntraday() { return seconds < DAILY.seconds; }
+
+    /** How long a stored intraday tier keeps bars, in seconds; 0 (unbounded) for the daily series. */
+    public long retentionSeconds() { return retentionDays * 86400L; }
+
+    /** Parse a Yahoo interval code; {@code null}/blank means daily. */
+    public static BarInterval parse(String code) {
+        if (code == null || code.isBlank()) return DAILY;
+        String c = code.trim().toLowerCase(Locale.US);
+        for (BarInterval i : values()) {
+            if (i.code.equals(c)) return i;
+        }
+        throw new IllegalArgumentException("Unsupported interval: " + code);
+    }
+}
@@ -1,31 +1,80 @@
 package org.example.indexcurrency.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
 
 public class ChartData {
+    // The cache stores prices at 6 decimals, so a cached adjClose can differ from a fresh one by up to half this.
+    private static final double STORED_PRECISION = 1e-6;
+
     private String symbol;
     private String currency;
     private String shortName;
     private String exchangeTimezoneName;
     private String fetchedRange;
     private String source = "yahoo";
-    private final List<Long> timestamps = new ArrayList<>();
-    private final List<Double> open = new ArrayList<>();
-    private final List<Double> high = new ArrayList<>();
-    private final List<Double> low = new ArrayList<>();
-    private final List<Double> close = new ArrayList<>();
-    private final List<Double> adjClose = new ArrayList<>();
-    private final List<Long> volume = new ArrayList<>();
+    // Identifies the stored content this series was read from or last written as (the cache file's mtime in
+    // millis); 0 when unknown. Derived results (downsampled, resampled) are cached per version.
+    private long version;
+    private final List<Long> timestamps;
+    private final List<Double> open;
+    private final List<Double> high;
+    private final List<Double> low;
+    private final List<Double> close;
+    private final List<Double> adjClose;
+    private final List<Long> volume;
     // Per-row cash dividend paid on that date (ex-date), 0 when none. Kept alongside raw close and
     // adjClose so "raw vs. dividend-adjusted" can become a display switch without re-fetching.
-    private final List<Double> dividends = new ArrayList<>();
+    private final List<Double> dividends;
+
+    public ChartData() {
+        timestamps = new ArrayList<>();
+        open = new ArrayList<>();
+        high = new ArrayList<>();
+        low = new ArrayList<>();
+        close = new ArrayList<>();
+        adjClose = new ArrayList<>();
+        volume = new ArrayList<>();
+        dividends = new ArrayList<>();
+    }
+
+    /** View of rows {@code [from, to)} of {@code src}, sharing its columns. */
+    private ChartData(ChartData src, int from, int to) {
+        copyMetaFrom(src);
+        timestamps = src.timestamps.subList(from, to);
+        open = src.open.subList(from, to);
+        high = src.high.subList(from, to);
+        low = src.low.subList(from, to);
+        close = src.close.subList(from, to);
+        adjClose = src.adjClose.subList(from, to);
+        volume = src.volume.subList(from, to);
+        dividends = src.dividends.subList(from, to);
+    }
+
+    /** Series with {@code meta}'s metadata over the given columns, e.g. a {@link SeriesSnapshot#view()}. */
+    ChartData(ChartData meta, List<Long> timestamps, List<Double> open, List<Double> high, List<Double> low,
+              List<Double> close, List<Double> adjClose, List<Long> volume, List<Double> dividends) {
+        copyMetaFrom(meta);
+        this.timestamps = timestamps;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.adjClose = adjClose;
+        this.volume = volume;
+        this.dividends = dividends;
+    }
 
     public String getSymbol() { return symbol; }
     public void setSymbol(String symbol) { this.symbol = symbol; }
@@ -39,6 +88,8 @@ public class ChartData {
     public void setFetchedRange(String fetchedRange) { this.fetchedRange = fetchedRange; }
     public String getSource() { return source; }
     public void setSource(String source) { this.source = source; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
 
     public List<Long> getTimestamps() { return timestamps; }
     public List<Double> getOpen() { return open; }
@@ -64,6 +115,43 @@ public class ChartData {
         dividends.add(div);
     }
 
+    /** Copy symbol, currency, names, timezone, fetched range, source and version from {@code src}. */
+    public void copyMetaFrom(ChartData src) {
+        symbol = src.symbol;
+        currency = src.currency;
+        shortName = src.shortName;
+        exchangeTimezoneName = src.exchangeTimezoneName;
+        fetchedRange = src.fetchedRange;
+        source = src.source;
+        version = src.version;
+    }
+
+    /**
+     * Rows with {@code fromTs <= timestamp <= toTs}, found by binary search and returned as a view over this
+     * series' columns (no copy). The view is for reading/serializing only: it must not be mutated, and it
+     * is invalidated by structural changes to this series. Returns {@code this} when the window covers
+     * every row.
+     */
+    public ChartData window(long fromTs, long toTs) {
+        int from = firstRowOnOrAfter(fromTs);
+        if (from < 0) from = timestamps.size();
+        int to = toTs == Long.MAX_VALUE ? timestamps.size() : firstRowOnOrAfter(toTs + 1);
+        if (to < 0) to = timestamps.size();
+        if (to < from) to = from;
+        if (from == 0 && to == timestamps.size()) return this;
+        return new ChartData(this, from, to);
+    }
+
+    /**
+     * Key identifying exactly these rows of this stored version (symbol, currency, version, first/last timestamp,
+     * row count), for caching results derived from them; {@code null} when the series is unversioned.
+     */
+    public String versionKey() {
+        if (version == 0) return null;
+        return symbol + "|" + currency + "|" + version + "|" + (timestamps.isEmpty() ? 0 : timestamps.getFirst()) + "|"
+                + getLastTimestamp() + "|" + timestamps.size();
+    }
+
     public long getLastTimestamp() {
         return timestamps.isEmpty() ? 0 : timestamps.get(timestamps.size() - 1);
     }
@@ -80,6 +168,108 @@ public class ChartData {
         }
     }
 
+    /**
+     * Merge a Yahoo fetch that overlaps the tail of this series, keeping the back-adjusted adjClose continuous.
+     * Yahoo's adjClose is relative to the latest dividend, so when {@code newer} was fetched after an ex-date its
+     * base differs from ours. The oldest overlapping bar anchors the correction: every earlier row is rescaled
+     * by {@code newer/this} adjClose at that bar, and rows from the anchor on are replaced by {@code newer}'s
+     * (authoritative) values. Without an overlap this degrades to a plain {@link #merge}.
+     *
+     * <p>An anchor that differs from the cached value by no more than the cache's 6-decimal rounding counts as
+     * unchanged, so refreshes without a new dividend don't rescale the history by rounding noise.
+     *
+     * @return the ratio applied to the existing history (1.0 when unchanged or no overlap was found)
+     */
+    public double mergeRescalingAdjClose(ChartData newer) {
+        if (newer.timestamps.isEmpty()) return 1.0;
+        int anchor = -1;
+        double ratio = 1.0;
+        for (int i = 0; i < newer.timestamps.size() && anchor < 0; i++) {
+            int j = indexOfTimestamp(newer.timestamps.get(i));
+            if (j < 0) continue;
+            double oldAc = adjClose.get(j), newAc = newer.adjClose.get(i);
+            if (oldAc > 0 && newAc > 0) {
+                anchor = j;
+                ratio = Math.abs(newAc - oldAc) <= STORED_PRECISION ? 1.0 : newAc / oldAc;
+            }
+        }
+        if (anchor < 0) {
+            merge(newer);
+            return 1.0;
+        }
+        if (ratio != 1.0) {
+            for (int j = 0; j < anchor; j++) adjClose.set(j, adjClose.get(j) * ratio);
+        }
+        truncate(anchor);
+        merge(newer);
+        return ratio;
+    }
+
+    /**
+     * Insert rows from {@code other} for UTC dates this series has no row on, keeping timestamp order. Used to
+     * patch holes (e.g. a failed upstream window) without touching any row that is already cached.
+     *
+     * @return the number of rows inserted
+     */
+    public int mergeMissing(ChartData other) {
+        Set<Long> days = new HashSet<>();
+        for (long ts : timestamps) days.add(Math.floorDiv(ts, 86400L));
+        List<Integer> missing = new ArrayList<>();
+        for (int j = 0; j < other.timestamps.size(); j++) {
+            if (days.add(Math.floorDiv(other.timestamps.get(j), 86400L))) missing.add(j);
+        }
+        if (missing.isEmpty()) return 0;
+
+        ChartData merged = new ChartData();
+        int i = 0, k = 0;
+        while (i < timestamps.size() || k < missing.size()) {
+            boolean takeOther = k < missing.size()
+                    && (i >= timestamps.size() || other.timestamps.get(missing.get(k)) < timestamps.get(i));
+            if (takeOther) merged.copyRow(other, missing.get(k++));
+            else merged.copyRow(this, i++);
+        }
+        truncate(0);
+        for (int r = 0; r < merged.timestamps.size(); r++) copyRow(merged, r);
+        return missing.size();
+    }
+
+    /** Multiply every adjClose by {@code factor}, e.g. to bring a fetched window onto the cached dividend base. */
+    public void scaleAdjClose(double factor) {
+        for (int i = 0; i < adjClose.size(); i++) adjClose.set(i, adjClose.get(i) * factor);
+    }
+
+    private void copyRow(ChartData src, int i) {
+        addRow(src.timestamps.get(i), src.open.get(i), src.high.get(i), src.low.get(i), src.close.get(i),
+                src.adjClose.get(i), src.volume.get(i), src.dividends.get(i));
+    }
+
+    /** Drop every row older than {@code epochSeconds}, e.g. to enforce an intraday tier's retention window. */
+    public void dropBefore(long epochSeconds) {
+        int keepFrom = firstRowOnOrAfter(epochSeconds);
+        if (keepFrom < 0) keepFrom = timestamps.size();
+        if (keepFrom == 0) return;
+        timestamps.subList(0, keepFrom).clear();
+        open.subList(0, keepFrom).clear();
+        high.subList(0, keepFrom).clear();
+        low.subList(0, keepFrom).clear();
+        close.subList(0, keepFrom).clear();
+        adjClose.subList(0, keepFrom).clear();
+        volume.subList(0, keepFrom).clear();
+        dividends.subList(0, keepFrom).clear();
+    }
+
+    /** Drop every row from {@code fromIndex} (inclusive) to the end. */
+    private void truncate(int fromIndex) {
+        timestamps.subList(fromIndex, timestamps.size()).clear();
+        open.subList(fromIndex, open.size()).clear();
+        high.subList(fromIndex, high.size()).clear();
+        low.subList(fromIndex, low.size()).clear();
+        close.subList(fromIndex, close.size()).clear();
+        adjClose.subList(fromIndex, adjClose.size()).clear();
+        volume.subList(fromIndex, volume.size()).clear();
+        dividends.subList(fromIndex, dividends.size()).clear();
+    }
+
     /** Map ex-date&rarr;amount dividends onto rows, placing each on the first row on/after its ex-date. */
     public void applyDividends(NavigableMap<LocalDate, Double> exDateToAmount) {
         applyDividends(exDateToAmount, Long.MIN_VALUE);
@@ -114,6 +304,12 @@ public class ChartData {
         return ans;
     }
 
+    /** Index of the row with exactly this timestamp, or -1 if none. */
+    private int indexOfTimestamp(long epochSeconds) {
+        int idx = firstRowOnOrAfter(epochSeconds);
+        return idx >= 0 && timestamps.get(idx) == epochSeconds ? idx : -1;
+    }
+
     /**
      * Recompute adjClose from raw close and the dividend column using standard back-adjustment: walking
      * newest&rarr;oldest, each ex-dividend scales every earlier close by {@code (1 - dividend/prevClose)}.
@@ -187,4 +383,81 @@ public class ChartData {
         root.put("chart", chart);
         return root;
     }
+
+    /**
+     * Stream the same JSON that serializing {@link #toYahooFormat()} produces, straight from the columns: no
+     * intermediate maps, list copies or re-boxing, so memory stays constant in the series length. Use a
+     * generator from the application's {@code ObjectMapper} so number and null handling match.
+     */
+    public void writeYahooFormat(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeObjectFieldStart("chart");
+        g.writeArrayFieldStart("result");
+        g.writeStartObject();
+
+        g.writeObjectFieldStart("meta");
+        g.writeStringField("currency", currency);
+        g.writeStringField("symbol", symbol);
+        g.writeStringField("shortName", shortName != null ? shortName : symbol);
+        g.writeStringField("exchangeTimezoneName",
+                exchangeTimezoneName != null ? exchangeTimezoneName : "America/New_York");
+        g.writeNumberField("regularMarketPrice", close.isEmpty() ? 0 : close.get(close.size() - 1));
+        g.writeNumberField("previousClose", close.size() >= 2 ? close.get(close.size() - 2) : 0);
+        g.writeEndObject();
+
+        g.writeArrayFieldStart("timestamp");
+        for (Long ts : timestamps) g.writeNumber(ts);
+        g.writeEndArray();
+
+        g.writeObjectFieldStart("indicators");
+        g.writeArrayFieldStart("quote");
+        g.writeStartObject();
+        writeDoubles(g, "open", open);
+        writeDoubles(g, "high", high);
+        writeDoubles(g, "low", low);
+        writeDoubles(g, "close", close);
+        g.writeArrayFieldStart("volume");
+        for (Long v : volume) g.writeNumber(v);
+        g.writeEndArray();
+        g.writeEndObject();
+        g.writeEndArray();
+        g.writeArrayFieldStart("adjclose");
+        g.writeStartObject();
+        writeDoubles(g, "adjclose", adjClose);
+        g.writeEndObject();
+        g.writeEndArray();
+        g.writeEndObject();
+
+        boolean events = false;
+        for (int i = 0; i < dividends.size(); i++) {
+            double d = dividends.get(i);
+            if (d <= 0) continue;
+            if (!events) {
+                g.writeObjectFieldStart("events");
+                g.writeObjectFieldStart("dividends");
+                events = true;
+            }
+            long ts = timestamps.get(i);
+            g.writeObjectFieldStart(String.valueOf(ts));
+            g.writeNumberField("amount", d);
+            g.writeNumberField("date", ts);
+            g.writeEndObject();
+        }
+        if (events) {
+            g.writeEndObject();
+            g.writeEndObject();
+        }
+
+        g.writeEndObject();
+        g.writeEndArray();
+        g.writeNullField("error");
+        g.writeEndObject();
+        g.writeEndObject();
+    }
+
+    private static void writeDoubles(JsonGenerator g, String field, List<Double> values) throws IOException {
+        g.writeArrayFieldStart(field);
+        for (Double v : values) g.writeNumber(v);
+        g.writeEndArray();
+    }
 }
@@ -0,0 +1,37 @@
+package org.example.indexcurrency.model;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * How often a portfolio is reset to its target weights, as in the frontend's {@code shouldRebalance}: every bar,
+ * or on the first bar of a new month, quarter or year. Calendar boundaries are taken in UTC.
+ */
+public enum RebalanceFrequency {
+    DAILY, MONTHLY, QUARTERLY, YEARLY;
+
+    /** Whether the step from the bar at {@code prevTs} to the one at {@code currTs} rebalances. */
+    public boolean rebalancesBetween(long prevTs, long currTs) {
+        if (this == DAILY) return true;
+        LocalDate prev = LocalDate.ofEpochDay(Math.floorDiv(prevTs, 86400L));
+        LocalDate curr = LocalDate.ofEpochDay(Math.floorDiv(currTs, 86400L));
+        if (curr.getYear() != prev.getYear()) return true;
+        return switch (this) {
+            case MONTHLY -> curr.getMonthValue() != prev.getMonthValue();
+            case QUARTERLY -> (curr.getMonthValue() - 1) / 3 != (prev.getMonthValue() - 1) / 3;
+            default -> false;
+        };
+    }
+
+    public String code() {
+        return name().toLowerCase(Locale.US);
+    }
+
+    public static RebalanceFrequency parse(String frequency) {
+        try {
+            return valueOf(frequency.trim().toUpperCase(Locale.US));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Unsupported rebalance frequency: " + frequency);
+        }
+    }
+}
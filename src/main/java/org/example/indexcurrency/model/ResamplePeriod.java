@@ -0,0 +1,86 @@
+package org.example.indexcurrency.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+/**
+ * A calendar resampling period with its anchor, in pandas-style codes: {@code W} (weeks ending Friday, like
+ * {@code IrisBondBackfill.toWeekly}) or {@code W-MON}..{@code W-SUN}; {@code M}; {@code Q} (quarters ending
+ * Mar/Jun/Sep/Dec) or {@code Q-JAN}..{@code Q-DEC} for the month a quarter ends in; {@code Y} (or {@code A})
+ * for calendar years, {@code Y-JUN} etc. for fiscal years ending in that month.
+ *
+ * @param weekEnd last day of a week, used by {@link Frequency#WEEK}
+ * @param endMonth month a quarter or year ends in, used by {@link Frequency#QUARTER} and {@link Frequency#YEAR}
+ */
+public record ResamplePeriod(Frequency frequency, DayOfWeek weekEnd, Month endMonth) {
+
+    public enum Frequency { WEEK, MONTH, QUARTER, YEAR }
+
+    /** Last date (inclusive) of the period containing {@code d}; also the period's label. */
+    public LocalDate endOf(LocalDate d) {
+        return switch (frequency) {
+            case WEEK -> d.with(TemporalAdjusters.nextOrSame(weekEnd));
+            case MONTH -> d.with(TemporalAdjusters.lastDayOfMonth());
+            case QUARTER -> {
+                int ahead = Math.floorMod(endMonth.getValue() - d.getMonthValue(), 3);
+                yield d.withDayOfMonth(1).plusMonths(ahead).with(TemporalAdjusters.lastDayOfMonth());
+            }
+            case YEAR -> {
+                int ahead = Math.floorMod(endMonth.getValue() - d.getMonthValue(), 12);
+                yield d.withDayOfMonth(1).plusMonths(ahead).with(TemporalAdjusters.lastDayOfMonth());
+            }
+        };
+    }
+
+    /** Canonical code, e.g. {@code W-FRI}, {@code M}, {@code Q-DEC}, {@code Y-JUN}. */
+    public String code() {
+        return switch (frequency) {
+            case WEEK -> "W-" + abbrev(weekEnd.name());
+            case MONTH -> "M";
+            case QUARTER -> "Q-" + abbrev(endMonth.name());
+            case YEAR -> "Y-" + abbrev(endMonth.name());
+        };
+    }
+
+    public static ResamplePeriod parse(String code) {
+        if (code == null || code.isBlank()) throw new IllegalArgumentException("Missing resampling period");
+        String c = code.trim().toUpperCase(Locale.US);
+        int dash = c.indexOf('-');
+        String base = dash < 0 ? c : c.substring(0, dash);
+        String anchor = dash < 0 ? null : c.substring(dash + 1);
+        return switch (base) {
+            case "W" -> new ResamplePeriod(Frequency.WEEK,
+                    anchor == null ? DayOfWeek.FRIDAY : dayOf(anchor, code), null);
+            case "M" -> {
+                if (anchor != null) throw new IllegalArgumentException("Unsupported resampling period: " + code);
+                yield new ResamplePeriod(Frequency.MONTH, null, null);
+            }
+            case "Q" -> new ResamplePeriod(Frequency.QUARTER, null,
+                    anchor == null ? Month.DECEMBER : monthOf(anchor, code));
+            case "Y", "A" -> new ResamplePeriod(Frequency.YEAR, null,
+                    anchor == null ? Month.DECEMBER : monthOf(anchor, code));
+            default -> throw new IllegalArgumentException("Unsupported resampling period: " + code);
+        };
+    }
+
+    private static DayOfWeek dayOf(String abbrev, String code) {
+        for (DayOfWeek d : DayOfWeek.values()) {
+            if (d.name().startsWith(abbrev) && abbrev.length() == 3) return d;
+        }
+        throw new IllegalArgumentException("Unsupported resampling period: " + code);
+    }
+
+    private static Month monthOf(String abbrev, String code) {
+        for (Month m : Month.values()) {
+            if (m.name().startsWith(abbrev) && abbrev.length() == 3) return m;
+        }
+        throw new IllegalArgumentException("Unsupported resampling period: " + code);
+    }
+
+    private static String abbrev(String name) {
+        return name.substring(0, 3);
+    }
+}
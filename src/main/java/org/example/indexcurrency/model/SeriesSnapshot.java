@@ -0,0 +1,222 @@
+package org.example.indexcurrency.model;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Immutable series held in fixed-size chunks of primitive columns ({@value #CHUNK_ROWS} rows each, the last
+ * one possibly shorter). Snapshots can be shared freely between threads and caches; {@link #update} derives the
+ * next snapshot after a refresh by reusing every unchanged chunk, so appending bars copies only the tail chunk.
+ *
+ * <p>A uniform rescale of adjClose (Yahoo moving its dividend base, see
+ * {@link ChartData#mergeRescalingAdjClose}) does not copy data either: each chunk carries its own adjClose
+ * factor, and a rescaled chunk shares the arrays of the one it replaces.
+ */
+public final class SeriesSnapshot {
+
+    static final int CHUNK_ROWS = 1024;
+    private static final int CHUNK_SHIFT = 10;
+    // Relative tolerance when recognizing a stored adjClose as a rescale of a chunk's values.
+    private static final double RESCALE_TOLERANCE = 1e-9;
+
+    /** Rows {@code [index * CHUNK_ROWS, index * CHUNK_ROWS + ts.length)}; the arrays are never written. */
+    private record Chunk(long[] ts, double[] open, double[] high, double[] low, double[] close, double[] adjClose,
+                         long[] volume, double[] dividends, double adjScale) {
+        int rows() { return ts.length; }
+
+        double adj(int i) { return adjScale == 1.0 ? adjClose[i] : adjClose[i] * adjScale; }
+
+        Chunk rescaled(double factor) {
+            return new Chunk(ts, open, high, low, close, adjClose, volume, dividends, adjScale * factor);
+        }
+    }
+
+    private final ChartData meta;
+    private final Chunk[] chunks;
+    private final int rows;
+
+    private SeriesSnapshot(ChartData meta, Chunk[] chunks) {
+        this.meta = meta;
+        this.chunks = chunks;
+        int n = 0;
+        for (Chunk c : chunks) n += c.rows();
+        this.rows = n;
+    }
+
+    public static SeriesSnapshot of(ChartData data) {
+        Chunk[] chunks = new Chunk[chunkCount(data.getTimestamps().size())];
+        return new SeriesSnapshot(metaOf(data), chunksOf(data, 0, chunks));
+    }
+
+    public int rows() { return rows; }
+
+    public long version() { return meta.getVersion(); }
+
+    /**
+     * Snapshot of {@code data}, a later state of this same series. Leading full chunks whose rows are unchanged,
+     * or unchanged apart from one common adjClose factor, are shared; the rest is rebuilt from {@code data}.
+     * Metadata (including the version) is taken from {@code data}.
+     */
+    public SeriesSnapshot update(ChartData data) {
+        int n = data.getTimestamps().size();
+        Chunk[] next = new Chunk[chunkCount(n)];
+        int shared = 0;
+        double factor = Double.NaN;
+        for (Chunk c : chunks) {
+            if (c.rows() < CHUNK_ROWS || (shared + 1) * CHUNK_ROWS > n) break;
+            int base = shared * CHUNK_ROWS;
+            if (!sameRows(c, data, base)) break;
+            double f = rescaleFactor(c, data, base);
+            if (Double.isNaN(f)) break;
+            if (Double.isNaN(factor)) factor = f;
+            else if (Math.abs(f - factor) > RESCALE_TOLERANCE * Math.abs(factor)) break;
+            next[shared++] = factor == 1.0 ? c : c.rescaled(factor);
+        }
+        return new SeriesSnapshot(metaOf(data), chunksOf(data, shared, next));
+    }
+
+    /**
+     * Read-only {@link ChartData} over this snapshot's chunks (no copy). Its columns reject modification; its
+     * metadata setters must not be used, since the view may be shared.
+     */
+    public ChartData view() {
+        return new ChartData(meta,
+                new LongColumn(0), new DoubleColumn(0), new DoubleColumn(1), new DoubleColumn(2),
+                new DoubleColumn(3), new DoubleColumn(4), new LongColumn(1), new DoubleColumn(5));
+    }
+
+    /** Mutable copy, for callers that merge into or repair the series. */
+    public ChartData toChartData() {
+        ChartData out = new ChartData();
+        out.copyMetaFrom(meta);
+        for (Chunk c : chunks) {
+            for (int i = 0; i < c.rows(); i++) {
+                out.addRow(c.ts()[i], c.open()[i], c.high()[i], c.low()[i], c.close()[i], c.adj(i), c.volume()[i],
+                        c.dividends()[i]);
+            }
+        }
+        return out;
+    }
+
+    private static ChartData metaOf(ChartData data) {
+        ChartData meta = new ChartData();
+        meta.copyMetaFrom(data);
+        return meta;
+    }
+
+    private static int chunkCount(int rows) {
+        return (rows + CHUNK_ROWS - 1) >>> CHUNK_SHIFT;
+    }
+
+    /** Fill {@code chunks[from..]} from the matching rows of {@code data}. */
+    private static Chunk[] chunksOf(ChartData data, int from, Chunk[] chunks) {
+        int n = data.getTimestamps().size();
+        for (int k = from; k < chunks.length; k++) {
+            int base = k * CHUNK_ROWS, len = Math.min(CHUNK_ROWS, n - base);
+            long[] ts = new long[len], vol = new long[len];
+            double[] open = new double[len], high = new double[len], low = new double[len], close = new double[len],
+                    adj = new double[len], div = new double[len];
+            for (int i = 0; i < len; i++) {
+                ts[i] = data.getTimestamps().get(base + i);
+                open[i] = data.getOpen().get(base + i);
+                high[i] = data.getHigh().get(base + i);
+                low[i] = data.getLow().get(base + i);
+                close[i] = data.getClose().get(base + i);
+                adj[i] = data.getAdjClose().get(base + i);
+                vol[i] = data.getVolume().get(base + i);
+                div[i] = data.getDividends().get(base + i);
+            }
+            chunks[k] = new Chunk(ts, open, high, low, close, adj, vol, div, 1.0);
+        }
+        return chunks;
+    }
+
+    /** Whether every column but adjClose of {@code c} equals {@code data}'s rows from {@code base}. */
+    private static boolean sameRows(Chunk c, ChartData data, int base) {
+        for (int i = 0; i < c.rows(); i++) {
+            int r = base + i;
+            if (c.ts()[i] != data.getTimestamps().get(r) || c.volume()[i] != data.getVolume().get(r)
+                    || Double.compare(c.open()[i], data.getOpen().get(r)) != 0
+                    || Double.compare(c.high()[i], data.getHigh().get(r)) != 0
+                    || Double.compare(c.low()[i], data.getLow().get(r)) != 0
+                    || Double.compare(c.close()[i], data.getClose().get(r)) != 0
+                    || Double.compare(c.dividends()[i], data.getDividends().get(r)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The factor {@code f} with {@code data adjClose == c.adj * f} on every row of the chunk (1.0 when
+     * unchanged), or NaN when the chunk's adjClose changed in some other way.
+     */
+    private static double rescaleFactor(Chunk c, ChartData data, int base) {
+        double f = Double.NaN;
+        boolean identical = true;
+        for (int i = 0; i < c.rows(); i++) {
+            double before = c.adj(i), after = data.getAdjClose().get(base + i);
+            if (Double.compare(before, after) == 0) continue;
+            identical = false;
+            if (before == 0 || after == 0 || Double.isNaN(before) || Double.isNaN(after)) return Double.NaN;
+            double ratio = after / before;
+            if (Double.isNaN(f)) f = ratio;
+            else if (Math.abs(ratio - f) > RESCALE_TOLERANCE * Math.abs(f)) return Double.NaN;
+        }
+        return identical ? 1.0 : f;
+    }
+
+    /** Column {@code 0..5} = open, high, low, close, adjClose, dividends. */
+    private final class DoubleColumn extends AbstractList<Double> implements RandomAccess {
+        private final int column;
+
+        DoubleColumn(int column) {
+            this.column = column;
+        }
+
+        @Override
+        public Double get(int index) {
+            Chunk c = chunks[chunkOf(index)];
+            int i = index & (CHUNK_ROWS - 1);
+            return switch (column) {
+                case 0 -> c.open()[i];
+                case 1 -> c.high()[i];
+                case 2 -> c.low()[i];
+                case 3 -> c.close()[i];
+                case 4 -> c.adj(i);
+                default -> c.dividends()[i];
+            };
+        }
+
+        @Override
+        public int size() {
+            return rows;
+        }
+    }
+
+    /** Column {@code 0..1} = timestamp, volume. */
+    private final class LongColumn extends AbstractList<Long> implements RandomAccess {
+        private final int column;
+
+        LongColumn(int column) {
+            this.column = column;
+        }
+
+        @Override
+        public Long get(int index) {
+            Chunk c = chunks[chunkOf(index)];
+            int i = index & (CHUNK_ROWS - 1);
+            return column == 0 ? c.ts()[i] : c.volume()[i];
+        }
+
+        @Override
+        public int size() {
+            return rows;
+        }
+    }
+
+    private int chunkOf(int index) {
+        if (index < 0 || index >= rows) throw new IndexOutOfBoundsException(index);
+        return index >>> CHUNK_SHIFT;
+    }
+}
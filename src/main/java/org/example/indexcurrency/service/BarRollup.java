@@ -0,0 +1,80 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.BarInterval;
+import org.example.indexcurrency.model.ChartData;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Rolls finer bars up into a coarser {@link BarInterval}, the way Yahoo builds them: open of the first bar, max
+ * high, min low, close/adjClose of the last bar, summed volume and dividends. Each output bar carries the
+ * timestamp of its first input bar.
+ *
+ * <p>Intraday buckets are aligned to the epoch (so 90m bars may start at a different minute than Yahoo's,
+ * which aligns to the session open). Calendar buckets (week from Monday, month, quarter) use the bar's date in
+ * the series' exchange timezone, so e.g. a Tokyo bar stamped 15:00 UTC the evening before lands in the right week.
+ */
+final class BarRollup {
+
+    private BarRollup() {}
+
+    static ChartData rollup(ChartData src, BarInterval target) {
+        ChartData out = new ChartData();
+        out.copyMetaFrom(src);
+
+        int n = src.getTimestamps().size();
+        if (n == 0) return out;
+        ZoneId zone = zoneOf(src.getExchangeTimezoneName());
+
+        long bucket = bucketOf(src.getTimestamps().get(0), target, zone);
+        int start = 0;
+        for (int i = 1; i <= n; i++) {
+            long b = i < n ? bucketOf(src.getTimestamps().get(i), target, zone) : Long.MIN_VALUE;
+            if (i == n || b != bucket) {
+                addBar(out, src, start, i);
+                start = i;
+                bucket = b;
+            }
+        }
+        return out;
+    }
+
+    /** Aggregate rows {@code [from, to)} into one bar. */
+    static void addBar(ChartData out, ChartData src, int from, int to) {
+        double high = Double.NEGATIVE_INFINITY, low = Double.POSITIVE_INFINITY, div = 0;
+        long volume = 0;
+        for (int i = from; i < to; i++) {
+            high = Math.max(high, src.getHigh().get(i));
+            low = Math.min(low, src.getLow().get(i));
+            volume += src.getVolume().get(i);
+            div += src.getDividends().get(i);
+        }
+        out.addRow(src.getTimestamps().get(from), src.getOpen().get(from), high, low,
+                src.getClose().get(to - 1), src.getAdjClose().get(to - 1), volume, div);
+    }
+
+    private static long bucketOf(long epochSeconds, BarInterval target, ZoneId zone) {
+        if (target.isIntraday()) return Math.floorDiv(epochSeconds, target.seconds());
+        LocalDate d = Instant.ofEpochSecond(epochSeconds).atZone(zone).toLocalDate();
+        return switch (target) {
+            case FIVE_DAYS, WEEKLY -> d.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+            case MONTHLY -> d.withDayOfMonth(1).toEpochDay();
+            case QUARTERLY -> d.withDayOfMonth(1).withMonth((d.getMonthValue() - 1) / 3 * 3 + 1).toEpochDay();
+            default -> d.toEpochDay();
+        };
+    }
+
+    static ZoneId zoneOf(String tz) {
+        if (tz == null || tz.isBlank()) return ZoneOffset.UTC;
+        try {
+            return ZoneId.of(tz);
+        } catch (Exception e) {
+            return ZoneOffset.UTC;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.indexcurrency.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.indexcurrency.model.ChartData;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a chart, negotiated on {@code /api/chart} via {@code Accept: }{@value #MEDIA_TYPE}.
+ * Each column is a block of little-endian 8-byte values the browser can wrap directly in a
+ * {@code Float64Array} / {@code BigInt64Array}, with no text parsing:
+ *
+ * <pre>
+ *   "ICS1"                   4-byte magic
+ *   uint32 LE                header length H
+ *   H bytes                  UTF-8 JSON header, space-padded so the first column starts 8-byte aligned
+ *   rows x 8 bytes, per column in header order
+ * </pre>
+ *
+ * The header holds the same metadata as the JSON {@code meta} block plus {@code rows} and {@code columns}
+ * ({@code [{name, type}]}, type {@code i64} or {@code f64}). Dividends are a full column rather than events.
+ */
+public final class BinarySeriesFormat {
+
+    public static final String MEDIA_TYPE = "application/vnd.indexcurrency.series";
+    private static final byte[] MAGIC = {'I', 'C', 'S', '1'};
+    private static final int CHUNK_ROWS = 1024;
+
+    /** One column block as described in the header. */
+    record Column(String name, String type) {}
+
+    private BinarySeriesFormat() {}
+
+    public static void write(ObjectMapper objectMapper, ChartData data, OutputStream out) throws IOException {
+        List<Double> close = data.getClose();
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("symbol", data.getSymbol());
+        header.put("currency", data.getCurrency());
+        header.put("shortName", data.getShortName() != null ? data.getShortName() : data.getSymbol());
+        header.put("exchangeTimezoneName",
+                data.getExchangeTimezoneName() != null ? data.getExchangeTimezoneName() : "America/New_York");
+        header.put("regularMarketPrice", close.isEmpty() ? 0.0 : close.getLast());
+        header.put("previousClose", close.size() >= 2 ? close.get(close.size() - 2) : 0.0);
+        header.put("rows", data.getTimestamps().size());
+        header.put("columns", List.of(
+                new Column("timestamp", "i64"), new Column("open", "f64"), new Column("high", "f64"),
+                new Column("low", "f64"), new Column("close", "f64"), new Column("adjclose", "f64"),
+                new Column("volume", "i64"), new Column("dividend", "f64")));
+
+        byte[] json = objectMapper.writeValueAsBytes(header);
+        int padded = (json.length + 7) / 8 * 8;
+        byte[] head = Arrays.copyOf(json, padded);
+        Arrays.fill(head, json.length, padded, (byte) ' ');
+        out.write(MAGIC);
+        out.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(padded).array());
+        out.write(head);
+
+        ByteBuffer buf = ByteBuffer.allocate(CHUNK_ROWS * 8).order(ByteOrder.LITTLE_ENDIAN);
+        writeLongs(out, buf, data.getTimestamps());
+        writeDoubles(out, buf, data.getOpen());
+        writeDoubles(out, buf, data.getHigh());
+        writeDoubles(out, buf, data.getLow());
+        writeDoubles(out, buf, data.getClose());
+        writeDoubles(out, buf, data.getAdjClose());
+        writeLongs(out, buf, data.getVolume());
+        writeDoubles(out, buf, data.getDividends());
+    }
+
+    private static void writeDoubles(OutputStream out, ByteBuffer buf, List<Double> values) throws IOException {
+        buf.clear();
+        for (Double v : values) {
+            if (!buf.hasRemaining()) flush(out, buf);
+            buf.putDouble(v);
+        }
+        flush(out, buf);
+    }
+
+    private static void writeLongs(OutputStream out, ByteBuffer buf, List<Long> values) throws IOException {
+        buf.clear();
+        for (Long v : values) {
+            if (!buf.hasRemaining()) flush(out, buf);
+            buf.putLong(v);
+        }
+        flush(out, buf);
+    }
+
+    private static void flush(OutputStream out, ByteBuffer buf) throws IOException {
+        out.write(buf.array(), 0, buf.position());
+        buf.clear();
+    }
+}
@@ -0,0 +1,201 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.ChartData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Background integrity pass over the cached price series. A partially failed upstream call (an investing.com
+ * window that came back empty, Yahoo dropping null-close rows) leaves a hole in the CSV that every later
+ * incremental refresh happily appends past. This pass scans each cached series for runs of missing weekdays,
+ * re-fetches just those date ranges from the series' own source and merges the rows in.
+ *
+ * <p>The expected calendar is plain Mon&ndash;Fri: without per-exchange holiday calendars a short run of
+ * missing weekdays is indistinguishable from a holiday, so only runs of at least {@value #MIN_GAP_WEEKDAYS}
+ * missing weekdays count as gaps. Each gap is fetched successfully at most once per process, so a hole the source
+ * genuinely has (a trading halt, a long holiday) costs one request rather than one per pass.
+ */
+@Service
+public class CacheIntegrityService {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheIntegrityService.class);
+    private static final int MIN_GAP_WEEKDAYS = 3;
+    private static final int MAX_RECORDED_REPAIRS = 200;
+
+    /** One repaired hole: the bounding cached dates (exclusive) and how many rows were filled in. */
+    public record GapRepair(String symbol, LocalDate after, LocalDate before, int rowsAdded, Instant repairedAt) {}
+
+    /** A hole between two adjacent cached rows. */
+    record Gap(long prevTs, long nextTs, double prevAdjClose, double nextAdjClose, int missingWeekdays) {}
+
+    private final CsvCacheService cacheService;
+    private final YahooFinanceService yahooService;
+    private final InvestingFinanceService investingService;
+    private final HandelsbankenFinanceService handelsbankenService;
+    private final Set<String> attempted = ConcurrentHashMap.newKeySet();
+    private final Deque<GapRepair> repairs = new ArrayDeque<>();
+
+    public CacheIntegrityService(CsvCacheService cacheService,
+                                 YahooFinanceService yahooService,
+                                 InvestingFinanceService investingService,
+                                 HandelsbankenFinanceService handelsbankenService) {
+        this.cacheService = cacheService;
+        this.yahooService = yahooService;
+        this.investingService = investingService;
+        this.handelsbankenService = handelsbankenService;
+    }
+
+    @Scheduled(initialDelayString = "${cache.integrity.initial-delay-ms:600000}",
+            fixedDelayString = "${cache.integrity.interval-ms:86400000}")
+    public void runIntegrityPass() {
+        List<String> keys = cacheService.cachedKeys();
+        log.info("Cache integrity pass over {} series", keys.size());
+        int repaired = 0;
+        for (String key : keys) {
+            try {
+                if (repair(key)) repaired++;
+            } catch (Exception e) {
+                log.warn("Integrity check failed for {}: {}", key, e.getMessage());
+            }
+        }
+        log.info("Cache integrity pass done: {} of {} series repaired", repaired, keys.size());
+    }
+
+    /** Most recent repairs, newest first. */
+    public synchronized List<GapRepair> recentRepairs() {
+        return new ArrayList<>(repairs);
+    }
+
+    /**
+     * Find the gaps of one series, fetch them without holding its symbol lock (a series can have dozens, each an
+     * upstream round-trip), then merge what came back under the lock. A gap counts as attempted once its fetch
+     * returned, with or without rows; a failed fetch is retried on the next pass.
+     */
+    private boolean repair(String key) {
+        ChartData[] snapshot = new ChartData[1];
+        cacheService.updateCached(key, data -> {
+            snapshot[0] = data;
+            return null;
+        });
+        ChartData data = snapshot[0];
+        // Synthetic series (e.g. the Iris Bond backfill proxy) have no upstream to repair from.
+        if (data == null || "synthetic".equals(data.getSource())) return false;
+
+        Map<Long, ChartData> fetched = new LinkedHashMap<>();
+        for (Gap gap : findGaps(data)) {
+            LocalDate after = utcDate(gap.prevTs()), before = utcDate(gap.nextTs());
+            String attempt = key + "|" + after;
+            if (attempted.contains(attempt)) continue;
+            try {
+                fetched.put(gap.prevTs(), fetchGap(data, gap));
+                attempted.add(attempt);
+            } catch (Exception e) {
+                log.warn("Gap repair fetch failed for {} ({} .. {}): {}", data.getSymbol(), after, before,
+                        e.getMessage());
+            }
+        }
+        if (fetched.isEmpty()) return false;
+
+        return cacheService.updateCached(key, current -> {
+            List<String> repaired = new ArrayList<>();
+            // Re-read the gaps: the series may have been refreshed (and its adjClose rescaled) meanwhile.
+            for (Gap gap : findGaps(current)) {
+                ChartData window = fetched.get(gap.prevTs());
+                if (window == null) continue;
+                LocalDate after = utcDate(gap.prevTs()), before = utcDate(gap.nextTs());
+                if (!"investing".equals(current.getSource()) && !"handelsbanken".equals(current.getSource())) {
+                    // Yahoo back-adjusts to its latest dividend; bring the window onto the cached base.
+                    double ratio = anchorRatio(window, gap);
+                    if (ratio != 1.0) window.scaleAdjClose(ratio);
+                }
+                int added = current.mergeMissing(window);
+                if (added == 0) {
+                    log.info("Gap in {} between {} and {} ({} weekdays) not available upstream",
+                            current.getSymbol(), after, before, gap.missingWeekdays());
+                    continue;
+                }
+                record(new GapRepair(current.getSymbol(), after, before, added, Instant.now()));
+                repaired.add(after + ".." + before + " (+" + added + ")");
+            }
+            if (repaired.isEmpty()) return null;
+            // Inserted investing.com rows are raw prices; re-derive adjClose over the patched series.
+            if ("investing".equals(current.getSource())) current.recomputeAdjCloseFromDividends();
+            log.info("Repaired gaps in {}: {}", current.getSymbol(), repaired);
+            return "Repair gaps in " + current.getSymbol() + ": " + String.join(", ", repaired);
+        });
+    }
+
+    /** Fetch the rows between a gap's bounding bars from the source that owns the series. */
+    private ChartData fetchGap(ChartData data, Gap gap) {
+        String symbol = data.getSymbol();
+        LocalDate after = utcDate(gap.prevTs()), before = utcDate(gap.nextTs());
+        return switch (data.getSource()) {
+            case "investing" -> investingService.fetchRange(symbol, after, before);
+            case "handelsbanken" -> handelsbankenService.fetchRange(symbol, after, before);
+            default -> yahooService.fetchRange(symbol, gap.prevTs(), gap.nextTs() + 86400L, "1d");
+        };
+    }
+
+    /** cached/fetched adjClose on the bar before (or else after) the gap, 1.0 if neither came back. */
+    private static double anchorRatio(ChartData fetched, Gap gap) {
+        List<Long> ts = fetched.getTimestamps();
+        long prevDay = Math.floorDiv(gap.prevTs(), 86400L), nextDay = Math.floorDiv(gap.nextTs(), 86400L);
+        double viaNext = 1.0;
+        for (int i = 0; i < ts.size(); i++) {
+            long day = Math.floorDiv(ts.get(i), 86400L);
+            double ac = fetched.getAdjClose().get(i);
+            if (ac <= 0) continue;
+            if (day == prevDay && gap.prevAdjClose() > 0) return gap.prevAdjClose() / ac;
+            if (day == nextDay && gap.nextAdjClose() > 0) viaNext = gap.nextAdjClose() / ac;
+        }
+        return viaNext;
+    }
+
+    /** Runs of at least {@value #MIN_GAP_WEEKDAYS} missing weekdays between adjacent rows. */
+    static List<Gap> findGaps(ChartData data) {
+        List<Gap> gaps = new ArrayList<>();
+        List<Long> ts = data.getTimestamps();
+        for (int i = 1; i < ts.size(); i++) {
+            int missing = weekdaysBetween(utcDate(ts.get(i - 1)), utcDate(ts.get(i)));
+            if (missing >= MIN_GAP_WEEKDAYS) {
+                gaps.add(new Gap(ts.get(i - 1), ts.get(i), data.getAdjClose().get(i - 1),
+                        data.getAdjClose().get(i), missing));
+            }
+        }
+        return gaps;
+    }
+
+    /** Mon&ndash;Fri dates strictly between two dates. */
+    static int weekdaysBetween(LocalDate from, LocalDate to) {
+        int count = 0;
+        for (LocalDate d = from.plusDays(1); d.isBefore(to); d = d.plusDays(1)) {
+            DayOfWeek w = d.getDayOfWeek();
+            if (w != DayOfWeek.SATURDAY && w != DayOfWeek.SUNDAY) count++;
+        }
+        return count;
+    }
+
+    private synchronized void record(GapRepair repair) {
+        repairs.addFirst(repair);
+        while (repairs.size() > MAX_RECORDED_REPAIRS) repairs.removeLast();
+    }
+
+    private static LocalDate utcDate(long epochSeconds) {
+        return Instant.ofEpochSecond(epochSeconds).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+}
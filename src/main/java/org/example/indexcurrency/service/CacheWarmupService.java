@@ -0,0 +1,210 @@
+package org.example.indexcurrency.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Startup warm-up. On {@link ApplicationReadyEvent} it scans the cache into an index ({@code index.csv} in the
+ * cache dir: one line per daily series with its source, fetched range, first/last timestamp, rows, manifest
+ * mtime and request count) and preloads the most requested series into the {@link ResidentSeriesStore} in
+ * parallel, together with the Fama&ndash;French factors, so first requests don't pay for file parsing.
+ *
+ * <p>The listener runs synchronously, so Spring Boot only switches its readiness state to accepting traffic once
+ * the hot set is loaded. Request counts accumulate across restarts: the index is rewritten after the warm-up
+ * and on shutdown. The duration and counts are exposed via {@link #status()} ({@code /api/cache/warmup}).
+ */
+@Service
+public class CacheWarmupService {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmupService.class);
+    private static final String INDEX_FILE = "index.csv";
+    private static final String INDEX_COLUMNS =
+            "key,symbol,source,fetchedRange,firstTs,lastTs,rows,modifiedMillis,requests";
+
+    /** One index line. {@code requests} counts chart requests over the index's lifetime. */
+    public record IndexEntry(String key, String symbol, String source, String fetchedRange, long firstTs,
+                             long lastTs, int rows, long modifiedMillis, long requests) {}
+
+    /** Warm-up outcome: state is {@code pending}, {@code running}, {@code done} or {@code disabled}. */
+    public record Status(String state, long startedAtMillis, long durationMillis, int indexed, int loaded,
+                         long rowsLoaded, boolean factorsLoaded, int failures) {}
+
+    private final Path indexFile;
+    private final CsvCacheService cacheService;
+    private final FamaFrenchService famaFrenchService;
+    private final boolean enabled;
+    private final int maxSeries;
+    private final int threads;
+    private final Map<String, Long> previousRequests = new HashMap<>();
+    private volatile Status status = new Status("pending", 0, 0, 0, 0, 0, false, 0);
+    private volatile List<IndexEntry> index = List.of();
+
+    public CacheWarmupService(@Value("${cache.dir:cache}") String cacheDir,
+                              CsvCacheService cacheService,
+                              FamaFrenchService famaFrenchService,
+                              @Value("${cache.warmup.enabled:true}") boolean enabled,
+                              @Value("${cache.warmup.max-series:64}") int maxSeries,
+                              @Value("${cache.warmup.threads:0}") int threads) {
+        this.indexFile = Path.of(cacheDir, INDEX_FILE);
+        this.cacheService = cacheService;
+        this.famaFrenchService = famaFrenchService;
+        this.enabled = enabled;
+        this.maxSeries = maxSeries;
+        this.threads = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            status = new Status("disabled", 0, 0, 0, 0, 0, false, 0);
+            return;
+        }
+        long started = System.currentTimeMillis();
+        status = new Status("running", started, 0, 0, 0, 0, false, 0);
+        readPreviousRequests();
+
+        List<IndexEntry> entries = scan();
+        index = entries;
+        List<IndexEntry> hot = entries.stream()
+                .sorted(Comparator.comparingLong(IndexEntry::requests).reversed()
+                        .thenComparing(Comparator.comparingLong(IndexEntry::modifiedMillis).reversed()))
+                .limit(maxSeries)
+                .toList();
+
+        AtomicInteger loaded = new AtomicInteger(), failures = new AtomicInteger();
+        AtomicLong rows = new AtomicLong();
+        AtomicBoolean factors = new AtomicBoolean();
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            pool.submit(() -> {
+                try {
+                    Object dates = famaFrenchService.getFactors().get("dates");
+                    factors.set(dates instanceof List<?> l && !l.isEmpty());
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    log.warn("Warm-up of Fama-French factors failed: {}", e.getMessage());
+                }
+            });
+            for (IndexEntry e : hot) {
+                pool.submit(() -> {
+                    try {
+                        int n = cacheService.preload(e.key());
+                        if (n > 0) {
+                            loaded.incrementAndGet();
+                            rows.addAndGet(n);
+                        }
+                    } catch (Exception ex) {
+                        failures.incrementAndGet();
+                        log.warn("Warm-up of {} failed: {}", e.key(), ex.getMessage());
+                    }
+                });
+            }
+        } // close() waits for every task
+
+        long duration = System.currentTimeMillis() - started;
+        status = new Status("done", started, duration, entries.size(), loaded.get(), rows.get(), factors.get(),
+                failures.get());
+        log.info("Cache warm-up done in {} ms: {} series indexed, {} preloaded ({} rows), factors {}, {} failures",
+                duration, entries.size(), loaded.get(), rows.get(), factors.get() ? "loaded" : "not loaded",
+                failures.get());
+        writeIndex();
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    /** The index as built at startup, with request counts brought up to date. */
+    public List<IndexEntry> index() {
+        return withCurrentRequests(index);
+    }
+
+    @PreDestroy
+    public void saveIndex() {
+        if (!index.isEmpty()) writeIndex();
+    }
+
+    private List<IndexEntry> scan() {
+        List<IndexEntry> entries = new ArrayList<>();
+        Map<String, Long> counts = cacheService.requestCounts();
+        for (String key : cacheService.cachedKeys()) {
+            try {
+                CsvCacheService.SeriesInfo info = cacheService.describe(key);
+                if (info == null) continue;
+                entries.add(new IndexEntry(key, info.symbol(), info.source(), info.fetchedRange(), info.firstTs(),
+                        info.lastTs(), info.rows(), info.modifiedMillis(),
+                        previousRequests.getOrDefault(key, 0L) + counts.getOrDefault(key, 0L)));
+            } catch (Exception e) {
+                log.warn("Could not index {}: {}", key, e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    private List<IndexEntry> withCurrentRequests(List<IndexEntry> entries) {
+        Map<String, Long> counts = cacheService.requestCounts();
+        List<IndexEntry> out = new ArrayList<>(entries.size());
+        for (IndexEntry e : entries) {
+            out.add(new IndexEntry(e.key(), e.symbol(), e.source(), e.fetchedRange(), e.firstTs(), e.lastTs(),
+                    e.rows(), e.modifiedMillis(),
+                    previousRequests.getOrDefault(e.key(), 0L) + counts.getOrDefault(e.key(), 0L)));
+        }
+        return out;
+    }
+
+    private void readPreviousRequests() {
+        if (!Files.exists(indexFile)) return;
+        try {
+            for (String line : Files.readAllLines(indexFile)) {
+                if (line.isBlank() || line.startsWith("key,")) continue;
+                String[] p = line.split(",");
+                if (p.length >= 9) previousRequests.put(p[0], Long.parseLong(p[8]));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read cache index {}: {}", indexFile, e.getMessage());
+        }
+    }
+
+    private synchronized void writeIndex() {
+        Map<String, IndexEntry> byKey = new LinkedHashMap<>();
+        for (IndexEntry e : withCurrentRequests(index)) byKey.put(e.key(), e);
+        Path tmp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+        try {
+            try (BufferedWriter w = Files.newBufferedWriter(tmp)) {
+                w.write(INDEX_COLUMNS);
+                w.newLine();
+                for (IndexEntry e : byKey.values()) {
+                    w.write(String.join(",", e.key(), e.symbol(), String.valueOf(e.source()),
+                            String.valueOf(e.fetchedRange()), String.valueOf(e.firstTs()),
+                            String.valueOf(e.lastTs()), String.valueOf(e.rows()),
+                            String.valueOf(e.modifiedMillis()), String.valueOf(e.requests())));
+                    w.newLine();
+                }
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write cache index {}: {}", indexFile, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.example.indexcurrency.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.indexcurrency.model.BarInterval;
+import org.example.indexcurrency.model.ChartData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoded {@code /api/chart} responses (Yahoo-shaped JSON or {@link BinarySeriesFormat}), raw and gzip, keyed by
+ * symbol, every request parameter and the format. A series
+ * changes at most once per refresh, so repeat requests are served as a byte copy (or a 304) without reading
+ * the cache files or serializing again.
+ *
+ * <p>An entry is valid until its series would next be refreshed ({@link CsvCacheService#freshUntilMillis}) and
+ * is dropped as soon as the series is rewritten earlier ({@link SeriesUpdatedEvent}); currency-converted entries
+ * are also dropped when any forex pair is rewritten. Entries are evicted
+ * least-recently-used once the total encoded size exceeds {@code chart.response-cache.max-bytes}. A relative
+ * range ({@code 1y}) stays windowed as of when its entry was encoded, at most one refresh interval ago.
+ */
+@Service
+public class ChartResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ChartResponseCache.class);
+
+    /**
+     * One encoded response. The ETags are strong and differ per content encoding; {@code lastModified} is the
+     * series version (its cache file's mtime).
+     */
+    public record Encoded(byte[] body, byte[] gzip, String etag, String gzipEtag, long lastModified,
+                          long freshUntil) {
+        long size() { return body.length + gzip.length; }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Encoded> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Latest rewritten version per series key, so a response encoded from data read before a rewrite is not
+    // cached after that rewrite's event has already cleared the entries.
+    private final Map<String, Long> latestVersions = new HashMap<>();
+    private long bytes;
+
+    public ChartResponseCache(ObjectMapper objectMapper,
+                              @Value("${chart.response-cache.max-bytes:67108864}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Cache key for a chart request: the key of the stored series it is served from, then every parameter that
+     * shapes the response, then the format, then the target currency ({@code null} for the series' own).
+     */
+    public static String key(String symbol, String range, String interval, String from, String to,
+                             Integer maxPoints, String currency, boolean binary) {
+        return CsvCacheService.seriesKey(symbol, BarInterval.parse(interval).storedTier()) + "|" + range + "|"
+                + interval + "|" + from + "|" + to + "|" + maxPoints + "|" + (binary ? "bin" : "json") + "|"
+                + (currency == null ? "" : currency);
+    }
+
+    /** The cached response, or {@code null} if absent or past its series' refresh time. */
+    public synchronized Encoded get(String key) {
+        Encoded e = entries.get(key);
+        if (e == null) return null;
+        if (e.freshUntil() <= System.currentTimeMillis()) {
+            remove(key);
+            return null;
+        }
+        return e;
+    }
+
+    /**
+     * Encode {@code data} and cache it under {@code key} until {@code freshUntil} (epoch millis). Encoding
+     * happens outside the lock; the encoded response is returned even when it is too large to cache.
+     */
+    public Encoded put(String key, ChartData data, long freshUntil, boolean binary) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(64 * 1024);
+        if (binary) {
+            BinarySeriesFormat.write(objectMapper, data, raw);
+        } else {
+            try (JsonGenerator g = objectMapper.getFactory().createGenerator(raw)) {
+                data.writeYahooFormat(g);
+            }
+        }
+        byte[] body = raw.toByteArray();
+        ByteArrayOutputStream packed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(packed)) {
+            gz.write(body);
+        }
+        String tag = Long.toHexString(data.getVersion()) + "-" + Integer.toHexString(key.hashCode()) + "-"
+                + Integer.toHexString(body.length);
+        Encoded e = new Encoded(body, packed.toByteArray(), "\"" + tag + "\"", "\"" + tag + "-gz\"",
+                data.getVersion(), freshUntil);
+        if (e.size() > maxBytes) return e;
+        synchronized (this) {
+            Long latest = latestVersions.get(key.substring(0, key.indexOf('|')));
+            if (latest != null && latest > data.getVersion()) return e;
+            remove(key);
+            entries.put(key, e);
+            bytes += e.size();
+            Iterator<Encoded> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().size();
+                eldest.remove();
+            }
+        }
+        return e;
+    }
+
+    @EventListener
+    public synchronized void onSeriesUpdated(SeriesUpdatedEvent event) {
+        latestVersions.merge(event.key(), event.version(), Math::max);
+        String prefix = event.key() + "|";
+        boolean forex = FxService.isPairKey(event.key());
+        int dropped = 0;
+        Iterator<Map.Entry<String, Encoded>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Encoded> e = it.next();
+            if (e.getKey().startsWith(prefix) || forex && !e.getKey().endsWith("|")) {
+                bytes -= e.getValue().size();
+                it.remove();
+                dropped++;
+            }
+        }
+        if (dropped > 0) log.debug("Dropped {} cached chart response(s) for {}", dropped, event.key());
+    }
+
+    private void remove(String key) {
+        Encoded old = entries.remove(key);
+        if (old != null) bytes -= old.size();
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.ChartData;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, compressed in-memory copy of a daily series ({@link GorillaCodec}): timestamps and volume
+ * delta-of-delta coded, price columns XOR coded. A column whose values are all equal collapses to that constant
+ * and a column identical to an earlier one (a NAV series repeating the same price as open/high/low/close/adjClose)
+ * to a reference, so a Handelsbanken fund costs one coded column plus timestamps.
+ *
+ * <p>Decoding is a sequential pass per column into primitive arrays ({@link #timestamps()}, {@link #adjClose()})
+ * for metric code, or into a full {@link ChartData} for serving.
+ *
+ * <p>The coded words of all columns are packed into one direct buffer, off the Java heap: only the small column
+ * descriptors and metadata are heap objects, so heap size and GC work do not grow with the resident history.
+ * The buffer is released when the series becomes unreachable.
+ */
+public final class CompressedSeries {
+
+    // Double columns, in this order.
+    private static final int OPEN = 0, HIGH = 1, LOW = 2, CLOSE = 3, ADJ_CLOSE = 4, DIVIDENDS = 5;
+
+    /**
+     * One column: constant, a reference to an earlier double column, or coded bits. While building, coded
+     * columns hold their words in {@code pending}; {@link #pack} moves them into the shared off-heap buffer.
+     */
+    private record Column(LongBuffer bits, long[] pending, double constant, long longConstant, int ref) {
+        static Column constant(double v) { return new Column(null, null, v, 0, -1); }
+        static Column constant(long v) { return new Column(null, null, 0, v, -1); }
+        static Column ref(int column) { return new Column(null, null, 0, 0, column); }
+        static Column coded(long[] words) { return new Column(null, words, 0, 0, -1); }
+
+        long bytes() { return bits == null ? 0 : 8L * bits.capacity(); }
+    }
+
+    private final ChartData meta;
+    private final int rows;
+    private final Column timestamps;
+    private final Column volume;
+    private final Column[] columns;
+
+    private CompressedSeries(ChartData meta, int rows, Column timestamps, Column volume, Column[] columns) {
+        this.meta = meta;
+        this.rows = rows;
+        this.timestamps = timestamps;
+        this.volume = volume;
+        this.columns = columns;
+    }
+
+    public static CompressedSeries of(ChartData data) {
+        ChartData meta = new ChartData();
+        meta.copyMetaFrom(data);
+        int n = data.getTimestamps().size();
+
+        long[] longs = new long[n];
+        copyLongs(data.getTimestamps(), longs);
+        Column ts = Column.coded(GorillaCodec.encodeLongs(longs, n));
+        copyLongs(data.getVolume(), longs);
+        Column volume = isConstant(longs, n) ? Column.constant(n == 0 ? 0L : longs[0])
+                : Column.coded(GorillaCodec.encodeLongs(longs, n));
+
+        List<List<Double>> source = List.of(data.getOpen(), data.getHigh(), data.getLow(), data.getClose(),
+                data.getAdjClose(), data.getDividends());
+        double[][] values = new double[source.size()][n];
+        Column[] columns = new Column[source.size()];
+        for (int c = 0; c < columns.length; c++) {
+            double[] v = values[c];
+            for (int i = 0; i < n; i++) v[i] = source.get(c).get(i);
+            columns[c] = compress(v, n, values, c);
+        }
+        List<Column> all = new ArrayList<>(List.of(ts, volume));
+        all.addAll(List.of(columns));
+        List<Column> packed = pack(all);
+        return new CompressedSeries(meta, n, packed.get(0), packed.get(1),
+                packed.subList(2, packed.size()).toArray(Column[]::new));
+    }
+
+    /** Copy the pending words of all coded columns into one direct buffer and point each column at its slice. */
+    private static List<Column> pack(List<Column> columns) {
+        int words = 0;
+        for (Column c : columns) if (c.pending() != null) words += c.pending().length;
+        LongBuffer buffer = ByteBuffer.allocateDirect(Math.max(1, words) * 8).order(ByteOrder.nativeOrder())
+                .asLongBuffer();
+        List<Column> out = new ArrayList<>(columns.size());
+        for (Column c : columns) {
+            if (c.pending() == null) {
+                out.add(c);
+                continue;
+            }
+            int offset = buffer.position();
+            buffer.put(c.pending());
+            out.add(new Column(buffer.slice(offset, c.pending().length), null, 0, 0, -1));
+        }
+        return out;
+    }
+
+    private static Column compress(double[] v, int n, double[][] earlier, int c) {
+        boolean constant = true;
+        for (int i = 1; i < n && constant; i++) constant = sameBits(v[i], v[0]);
+        if (constant) return Column.constant(n == 0 ? 0.0 : v[0]);
+        for (int e = 0; e < c; e++) {
+            double[] other = earlier[e];
+            boolean same = true;
+            for (int i = 0; i < n && same; i++) same = sameBits(v[i], other[i]);
+            if (same) return Column.ref(e);
+        }
+        return Column.coded(GorillaCodec.encodeDoubles(v, n));
+    }
+
+    public int rows() { return rows; }
+
+    public String symbol() { return meta.getSymbol(); }
+
+    public long version() { return meta.getVersion(); }
+
+    /** Off-heap bytes held by the coded columns, for budgeting. */
+    public long sizeBytes() {
+        long bytes = timestamps.bytes() + volume.bytes();
+        for (Column c : columns) bytes += c.bytes();
+        return bytes;
+    }
+
+    public long[] timestamps() {
+        long[] out = new long[rows];
+        GorillaCodec.decodeLongs(timestamps.bits(), rows, out);
+        return out;
+    }
+
+    public double[] adjClose() {
+        return decode(ADJ_CLOSE);
+    }
+
+    public double[] close() {
+        return decode(CLOSE);
+    }
+
+    /** Decode everything back into a (mutable) series with the same metadata and version. */
+    public ChartData toChartData() {
+        long[] ts = timestamps();
+        // Referenced columns decode once and are shared.
+        double[][] cols = new double[columns.length][];
+        for (int c = 0; c < columns.length; c++) cols[c] = columns[c].ref() >= 0 ? cols[columns[c].ref()] : decode(c);
+        double[] open = cols[OPEN], high = cols[HIGH], low = cols[LOW], close = cols[CLOSE],
+                adj = cols[ADJ_CLOSE], div = cols[DIVIDENDS];
+        long[] vol = new long[rows];
+        if (volume.bits() != null) GorillaCodec.decodeLongs(volume.bits(), rows, vol);
+        else Arrays.fill(vol, volume.longConstant());
+        ChartData out = new ChartData();
+        out.copyMetaFrom(meta);
+        for (int i = 0; i < rows; i++) out.addRow(ts[i], open[i], high[i], low[i], close[i], adj[i], vol[i], div[i]);
+        return out;
+    }
+
+    private double[] decode(int column) {
+        Column c = columns[column];
+        if (c.ref() >= 0) return decode(c.ref());
+        double[] out = new double[rows];
+        if (c.bits() == null) Arrays.fill(out, c.constant());
+        else GorillaCodec.decodeDoubles(c.bits(), rows, out);
+        return out;
+    }
+
+    private static void copyLongs(List<Long> src, long[] dst) {
+        for (int i = 0; i < dst.length; i++) dst[i] = src.get(i);
+    }
+
+    private static boolean isConstant(long[] v, int n) {
+        for (int i = 1; i < n; i++) if (v[i] != v[0]) return false;
+        return true;
+    }
+
+    private static boolean sameBits(double a, double b) {
+        return Double.doubleToRawLongBits(a) == Double.doubleToRawLongBits(b);
+    }
+}
@@ -0,0 +1,424 @@
+package org.example.indexcurrency.service;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Continuous weight search for {@link PortfolioOptimizer} ({@code method=continuous}), for portfolios too large
+ * for the grid: its candidate count grows as {@code (100/step)^N}, while this needs a few thousand simulations
+ * however many symbols there are.
+ *
+ * <p>{@link #seed()} solves the mean-variance problem as a bounded quadratic program (projected gradient with
+ * FISTA acceleration) at several risk aversions, from minimum variance towards maximum return, and adds random
+ * feasible weightings. The random ones fix the metric ranges the score is normalized by, like the grid's points
+ * do, with the Sortino and UPI saturating at their extremes: without that the search would chase the UPI's
+ * singularity (near-cash weightings with almost no drawdown), which a 5% grid never gets close to.
+ * {@link #search} then runs a separable CMA-ES from the best seed on the exact objective (every sample is
+ * simulated with drift and rebalancing like the grid's candidates), so Sortino and UPI blends are optimized
+ * directly rather than through the covariance approximation. Samples are projected onto the bounds and rounded
+ * to 0.01%.
+ *
+ * <p>The random stream is fixed, so a job is reproducible.
+ */
+final class ContinuousSolver {
+
+    private static final int METRICS = 4;
+    private static final int FRONTIER_POINTS = 8;
+    private static final int SAMPLES_PER_SYMBOL = 8;
+    private static final int QP_ITERATIONS = 3000;
+    static final int MAX_GENERATIONS = 400;
+    private static final int STALL_GENERATIONS = 40;
+    private static final double STEPS_PER_PERCENT = 100;
+    private static final double RESOLUTION = 1 / STEPS_PER_PERCENT; // percent
+    private static final double TOLERANCE = 1e-9;
+
+    private final PortfolioOptimizer.Problem problem;
+    private final double[] lower, upper;
+    private final double totalMin, totalMax;
+    private final PortfolioOptimizer.Objective objective;
+    private final Function<PortfolioOptimizer.Candidates, double[]> evaluator;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final int n;
+
+    private final PortfolioOptimizer.Candidates evaluated;
+    private double[] metrics = new double[0];
+    private PortfolioOptimizer.Scale scale;
+
+    /**
+     * {@code evaluator} simulates a batch of weightings and returns their metrics, {@code METRICS} per candidate
+     * as {@link PortfolioOptimizer#evaluate} writes them.
+     */
+    ContinuousSolver(PortfolioOptimizer.Problem problem, double[] lower, double[] upper, double totalMin,
+                     double totalMax, PortfolioOptimizer.Objective objective,
+                     Function<PortfolioOptimizer.Candidates, double[]> evaluator) {
+        double minTotal = 0, maxTotal = 0;
+        for (int s = 0; s < lower.length; s++) {
+            minTotal += lower[s];
+            maxTotal += upper[s];
+        }
+        if (minTotal > totalMax + TOLERANCE || maxTotal < totalMin - TOLERANCE) {
+            throw new IllegalArgumentException("No weighting satisfies both the symbol and the total bounds");
+        }
+        this.problem = problem;
+        this.lower = lower;
+        this.upper = upper;
+        this.totalMin = totalMin;
+        this.totalMax = totalMax;
+        this.objective = objective;
+        this.evaluator = evaluator;
+        this.n = lower.length;
+        this.evaluated = new PortfolioOptimizer.Candidates(n, Integer.MAX_VALUE, false);
+    }
+
+    /** Every weighting simulated so far, in order, and their metrics. */
+    PortfolioOptimizer.Candidates evaluated() {
+        return evaluated;
+    }
+
+    double[] metrics() {
+        return metrics;
+    }
+
+    /** The seeds' saturating scale, which every score of this search uses. */
+    PortfolioOptimizer.Scale scale() {
+        return scale;
+    }
+
+    /** Evaluate the mean-variance frontier and random feasible weightings; returns how many were added. */
+    int seed() {
+        PortfolioOptimizer.Candidates seeds = new PortfolioOptimizer.Candidates(n, Integer.MAX_VALUE, true);
+        double[] mean = new double[n];
+        double[][] cov = covariance(mean);
+        double dailyCash = problem.cashRate() / 100 / PortfolioEngine.TRADING_DAYS;
+        double[] excess = new double[n];
+        double spread = 0;
+        for (int s = 0; s < n; s++) {
+            excess[s] = mean[s] - dailyCash;
+            spread = Math.max(spread, Math.abs(excess[s]));
+        }
+        double lipschitz = 2 * largestEigenvalue(cov);
+        seeds.add(feasible(minimize(cov, excess, 0, lipschitz)));
+        if (spread > 0) {
+            // Risk appetites spanning minimum variance to (nearly) maximum return.
+            for (int k = 0; k < FRONTIER_POINTS; k++) {
+                double appetite = lipschitz / spread * Math.pow(10, k / 2.0 - 2);
+                seeds.add(feasible(minimize(cov, excess, appetite, lipschitz)));
+            }
+        }
+        double[] equal = new double[n];
+        Arrays.fill(equal, (totalMin + totalMax) / 2 / n);
+        seeds.add(feasible(equal));
+        // Random weightings spread over the feasible region like a grid's points: the total drawn with the density
+        // of a simplex's volume, split evenly at random (flat Dirichlet), then projected onto the bounds.
+        double minTotal = 0, maxTotal = 0;
+        for (int s = 0; s < n; s++) {
+            minTotal += lower[s];
+            maxTotal += upper[s];
+        }
+        double from = Math.max(totalMin, minTotal), to = Math.min(totalMax, maxTotal);
+        double[] sample = new double[n];
+        int samplesFrom = seeds.size;
+        for (int k = 0; k < SAMPLES_PER_SYMBOL * n; k++) {
+            double total = from + (to - from) * Math.pow(random.nextDouble(), 1.0 / n), sum = 0;
+            for (int s = 0; s < n; s++) {
+                sample[s] = -Math.log(1 - random.nextDouble());
+                sum += sample[s];
+            }
+            for (int s = 0; s < n; s++) sample[s] *= total / sum;
+            seeds.add(feasible(sample));
+        }
+        add(seeds, evaluator.apply(seeds));
+        // Normalize by the random weightings only: frontier points close to all cash have extreme Sortino and UPI
+        // values that would flatten every other candidate's.
+        scale = PortfolioOptimizer.Scale.of(metrics, samplesFrom, evaluated.size, objective).saturated();
+        return seeds.size;
+    }
+
+    /**
+     * Separable CMA-ES maximizing the score (normalized by the seeds' ranges) from the best seed, for up to
+     * {@link #MAX_GENERATIONS} generations or until the step size drops below the weight resolution or the best
+     * score stalls. {@code onGeneration} receives each finished generation's number; the search stops early when
+     * {@code cancelled} turns true.
+     */
+    void search(IntConsumer onGeneration, BooleanSupplier cancelled) {
+        double[] range = new double[n];
+        double rangeSum = 0;
+        for (int s = 0; s < n; s++) {
+            range[s] = upper[s] - lower[s];
+            rangeSum += range[s];
+        }
+        if (rangeSum == 0 || evaluated.size == 0) return;
+        double avgRange = rangeSum / n;
+
+        // Population and recombination weights.
+        int lambda = 2 * (4 + (int) (3 * Math.log(n)));
+        int mu = lambda / 2;
+        double[] w = new double[mu];
+        double wSum = 0, wSqSum = 0;
+        for (int i = 0; i < mu; i++) {
+            w[i] = Math.log(mu + 0.5) - Math.log(i + 1);
+            wSum += w[i];
+        }
+        for (int i = 0; i < mu; i++) {
+            w[i] /= wSum;
+            wSqSum += w[i] * w[i];
+        }
+        double muEff = 1 / wSqSum;
+
+        // Step-size and (diagonal) covariance adaptation rates.
+        double cSigma = (muEff + 2) / (n + muEff + 5);
+        double dSigma = 1 + 2 * Math.max(0, Math.sqrt((muEff - 1) / (n + 1)) - 1) + cSigma;
+        double cc = (4 + muEff / n) / (n + 4 + 2 * muEff / n);
+        double c1 = 2 / ((n + 1.3) * (n + 1.3) + muEff) * (n + 2) / 3;
+        double cMu = Math.min(1 - c1, 2 * (muEff - 2 + 1 / muEff) / ((n + 2) * (n + 2) + muEff) * (n + 2) / 3);
+        double chiN = Math.sqrt(n) * (1 - 1.0 / (4 * n) + 1.0 / (21.0 * n * n));
+
+        int bestSeed = best(0, evaluated.size);
+        double[] m = evaluated.weights(bestSeed);
+        double bestScore = scale.score(metrics, bestSeed * METRICS);
+        if (Double.isNaN(bestScore)) return;
+        double sigma = 0.25 * avgRange;
+        double[] diag = new double[n], pSigma = new double[n], pc = new double[n];
+        for (int s = 0; s < n; s++) diag[s] = range[s] / avgRange;
+
+        double[][] z = new double[lambda][n];
+        PortfolioOptimizer.Candidates population = new PortfolioOptimizer.Candidates(n, lambda, false);
+        double[] x = new double[n];
+        int stalled = 0;
+        for (int g = 0; g < MAX_GENERATIONS && !cancelled.getAsBoolean(); g++) {
+            population.size = 0;
+            for (int k = 0; k < lambda; k++) {
+                for (int s = 0; s < n; s++) x[s] = m[s] + sigma * diag[s] * random.nextGaussian();
+                population.add(feasible(x));
+            }
+            double[] sampleMetrics = evaluator.apply(population);
+            if (cancelled.getAsBoolean()) break;
+            int first = evaluated.size;
+            add(population, sampleMetrics);
+
+            Integer[] order = new Integer[lambda];
+            double[] scores = new double[lambda];
+            for (int k = 0; k < lambda; k++) {
+                order[k] = k;
+                scores[k] = scale.score(metrics, (first + k) * METRICS);
+                if (Double.isNaN(scores[k])) scores[k] = Double.NEGATIVE_INFINITY;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+            if (scores[order[0]] > bestScore + TOLERANCE) {
+                bestScore = scores[order[0]];
+                stalled = 0;
+            } else if (++stalled >= STALL_GENERATIONS) {
+                onGeneration.accept(g + 1);
+                break;
+            }
+
+            // Recombine the better half; steps are taken from the repaired (feasible) samples.
+            double[] previous = m.clone();
+            Arrays.fill(m, 0);
+            for (int i = 0; i < mu; i++) {
+                double[] xi = population.weights(order[i]);
+                for (int s = 0; s < n; s++) {
+                    m[s] += w[i] * xi[s];
+                    z[i][s] = (xi[s] - previous[s]) / sigma;
+                }
+            }
+            double pSigmaNorm = 0;
+            for (int s = 0; s < n; s++) {
+                double step = (m[s] - previous[s]) / sigma;
+                double whitened = diag[s] > 0 ? step / diag[s] : 0;
+                pSigma[s] = (1 - cSigma) * pSigma[s] + Math.sqrt(cSigma * (2 - cSigma) * muEff) * whitened;
+                pSigmaNorm += pSigma[s] * pSigma[s];
+            }
+            pSigmaNorm = Math.sqrt(pSigmaNorm);
+            boolean hSigma = pSigmaNorm / Math.sqrt(1 - Math.pow(1 - cSigma, 2.0 * (g + 1))) / chiN
+                    < 1.4 + 2.0 / (n + 1);
+            double maxDiag = 0;
+            for (int s = 0; s < n; s++) {
+                double step = (m[s] - previous[s]) / sigma;
+                pc[s] = (1 - cc) * pc[s] + (hSigma ? Math.sqrt(cc * (2 - cc) * muEff) * step : 0);
+                double rankMu = 0;
+                for (int i = 0; i < mu; i++) rankMu += w[i] * z[i][s] * z[i][s];
+                double c = diag[s] * diag[s];
+                c = (1 - c1 - cMu) * c + c1 * (pc[s] * pc[s] + (hSigma ? 0 : cc * (2 - cc) * c)) + cMu * rankMu;
+                diag[s] = Math.sqrt(Math.max(c, 0));
+                maxDiag = Math.max(maxDiag, diag[s]);
+            }
+            sigma *= Math.exp(cSigma / dSigma * (pSigmaNorm / chiN - 1));
+            onGeneration.accept(g + 1);
+            if (sigma * maxDiag < RESOLUTION / 2) break;
+        }
+
+        PortfolioOptimizer.Candidates last = new PortfolioOptimizer.Candidates(n, 1, false);
+        last.add(feasible(m));
+        if (!cancelled.getAsBoolean()) add(last, evaluator.apply(last));
+    }
+
+    private void add(PortfolioOptimizer.Candidates batch, double[] batchMetrics) {
+        int first = evaluated.size;
+        for (int c = 0; c < batch.size; c++) evaluated.add(batch.weights(c));
+        metrics = Arrays.copyOf(metrics, evaluated.size * METRICS);
+        System.arraycopy(batchMetrics, 0, metrics, first * METRICS, batch.size * METRICS);
+    }
+
+    private int best(int from, int to) {
+        int best = from;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int c = from; c < to; c++) {
+            double score = scale.score(metrics, c * METRICS);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /** Sample covariance of the constituents' step returns; their means go to {@code mean}. */
+    private double[][] covariance(double[] mean) {
+        int steps = problem.steps();
+        double[] r = problem.stepReturns();
+        for (int i = 0; i < steps; i++) {
+            for (int s = 0; s < n; s++) mean[s] += r[i * n + s];
+        }
+        for (int s = 0; s < n; s++) mean[s] /= Math.max(1, steps);
+        double[][] cov = new double[n][n];
+        for (int i = 0; i < steps; i++) {
+            for (int a = 0; a < n; a++) {
+                double da = r[i * n + a] - mean[a];
+                for (int b = a; b < n; b++) cov[a][b] += da * (r[i * n + b] - mean[b]);
+            }
+        }
+        for (int a = 0; a < n; a++) {
+            for (int b = a; b < n; b++) cov[b][a] = cov[a][b] /= Math.max(1, steps - 1);
+        }
+        return cov;
+    }
+
+    private static double largestEigenvalue(double[][] cov) {
+        int n = cov.length;
+        double[] v = new double[n], next = new double[n];
+        Arrays.fill(v, 1 / Math.sqrt(n));
+        double lambda = 0;
+        for (int it = 0; it < 50; it++) {
+            double norm = 0;
+            for (int a = 0; a < n; a++) {
+                double sum = 0;
+                for (int b = 0; b < n; b++) sum += cov[a][b] * v[b];
+                next[a] = sum;
+                norm += sum * sum;
+            }
+            norm = Math.sqrt(norm);
+            if (norm == 0) return 0;
+            for (int a = 0; a < n; a++) v[a] = next[a] / norm;
+            lambda = norm;
+        }
+        return lambda * 1.01; // power iteration approaches from below
+    }
+
+    /**
+     * Minimize {@code x'Cx - appetite * excess'x} over the feasible weights (as fractions) with accelerated
+     * projected gradient; returns percent.
+     */
+    private double[] minimize(double[][] cov, double[] excess, double appetite, double lipschitz) {
+        double[] x = new double[n];
+        Arrays.fill(x, (totalMin + totalMax) / 2 / n);
+        x = project(x);
+        for (int s = 0; s < n; s++) x[s] /= 100;
+        if (lipschitz <= 0) return scaled(x, 100);
+        double[] y = x.clone(), grad = new double[n], next = new double[n];
+        double t = 1;
+        for (int it = 0; it < QP_ITERATIONS; it++) {
+            for (int a = 0; a < n; a++) {
+                double sum = 0;
+                for (int b = 0; b < n; b++) sum += cov[a][b] * y[b];
+                grad[a] = 2 * sum - appetite * excess[a];
+            }
+            for (int s = 0; s < n; s++) next[s] = (y[s] - grad[s] / lipschitz) * 100;
+            double[] projected = project(next);
+            double change = 0;
+            double tNext = (1 + Math.sqrt(1 + 4 * t * t)) / 2;
+            for (int s = 0; s < n; s++) {
+                double p = projected[s] / 100;
+                change = Math.max(change, Math.abs(p - x[s]));
+                y[s] = p + (t - 1) / tNext * (p - x[s]);
+                x[s] = p;
+            }
+            t = tNext;
+            if (change < 1e-10) break;
+        }
+        return scaled(x, 100);
+    }
+
+    private static double[] scaled(double[] v, double factor) {
+        double[] out = new double[v.length];
+        for (int s = 0; s < v.length; s++) out[s] = v[s] * factor;
+        return out;
+    }
+
+    /**
+     * Euclidean projection of {@code v} (percent) onto the symbol bounds and the total bounds: clip to the
+     * bounds, then if the total is out of range shift every weight by the same amount, found by bisection.
+     */
+    double[] project(double[] v) {
+        double total = clippedTotal(v, 0);
+        double target;
+        if (total > totalMax) target = totalMax;
+        else if (total < totalMin) target = totalMin;
+        else return clipped(v, 0);
+        double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+        for (int s = 0; s < n; s++) {
+            lo = Math.min(lo, v[s] - upper[s]);
+            hi = Math.max(hi, v[s] - lower[s]);
+        }
+        for (int it = 0; it < 100 && hi - lo > 1e-12; it++) {
+            double shift = (lo + hi) / 2;
+            if (clippedTotal(v, shift) > target) lo = shift;
+            else hi = shift;
+        }
+        return clipped(v, (lo + hi) / 2);
+    }
+
+    /**
+     * {@link #project} rounded to {@link #RESOLUTION}, adjusting single weights by one unit until the total is
+     * back within bounds; the unrounded projection when rounding can't satisfy them.
+     */
+    double[] feasible(double[] v) {
+        double[] exact = project(v);
+        double[] rounded = new double[n];
+        for (int s = 0; s < n; s++) {
+            double r = Math.round(exact[s] * STEPS_PER_PERCENT) / STEPS_PER_PERCENT;
+            rounded[s] = Math.min(upper[s], Math.max(lower[s], r));
+        }
+        for (int pass = 0; pass <= n; pass++) {
+            double total = 0;
+            for (double r : rounded) total += r;
+            double direction = total > totalMax + TOLERANCE ? -1 : total < totalMin - TOLERANCE ? 1 : 0;
+            if (direction == 0) return rounded;
+            boolean moved = false;
+            for (int s = 0; s < n && !moved; s++) {
+                double r = (Math.round(rounded[s] * STEPS_PER_PERCENT) + direction) / STEPS_PER_PERCENT;
+                if (r >= lower[s] - TOLERANCE && r <= upper[s] + TOLERANCE && Math.abs(r - exact[s]) < RESOLUTION) {
+                    rounded[s] = r;
+                    moved = true;
+                }
+            }
+            if (!moved) break;
+        }
+        return exact;
+    }
+
+    private double clippedTotal(double[] v, double shift) {
+        double total = 0;
+        for (int s = 0; s < n; s++) total += Math.min(upper[s], Math.max(lower[s], v[s] - shift));
+        return total;
+    }
+
+    private double[] clipped(double[] v, double shift) {
+        double[] out = new double[n];
+        for (int s = 0; s < n; s++) out[s] = Math.min(upper[s], Math.max(lower[s], v[s] - shift));
+        return out;
+    }
+}
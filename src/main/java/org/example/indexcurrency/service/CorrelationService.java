@@ -0,0 +1,213 @@
+package org.example.indexcurrency.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Correlation matrices of daily returns, the frontend's {@code calcCorrelation}/{@code pearson} for every pair at
+ * once. The browser aligns and correlates one pair at a time (N&middot;(N&minus;1)/2 passes for N symbols); here
+ * the returns are aligned once by {@link ReturnMatrixService}, each column is centered and scaled to unit length
+ * (after ranking, for Spearman) so a correlation is a single dot product, and the upper triangle is computed in
+ * square blocks of symbols on a {@link ForkJoinPool}. Matrices are memoized by the return matrix key (symbols,
+ * window, currency and series versions) and the method.
+ *
+ * <p>Unlike the frontend, which pairs each series' most recent returns by position, returns are paired by day.
+ * A symbol without history covering the window gets a row of {@code null}s instead of voiding the whole matrix.
+ */
+@Service
+public class CorrelationService {
+
+    // As the frontend's pearson: fewer common returns than this give no correlation.
+    private static final int MIN_DAYS = 5;
+    // Symbols per side of a block of pairs computed by one task.
+    private static final int BLOCK = 16;
+
+    public enum Method {
+        PEARSON, SPEARMAN;
+
+        public static Method parse(String s) {
+            try {
+                return valueOf(s.toUpperCase(Locale.US));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown correlation method: " + s);
+            }
+        }
+    }
+
+    /**
+     * {@code matrix[a][b]}: correlation of symbols {@code a} and {@code b} over the {@code days} aligned daily
+     * returns from {@code from} to {@code to} (epoch seconds); {@code null} for a symbol without history covering
+     * the window, a constant series or fewer than five common returns.
+     */
+    public record CorrelationMatrix(List<String> symbols, String currency, String method, int days, Long from,
+                                    Long to, Double[][] matrix) {}
+
+    private final ReturnMatrixService returnMatrices;
+    private final ForkJoinPool pool;
+    private final LruCache<String, CorrelationMatrix> cache = new LruCache<>(64);
+
+    public CorrelationService(ReturnMatrixService returnMatrices,
+                              @Value("${correlation.parallelism:0}") int parallelism) {
+        this.returnMatrices = returnMatrices;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /** The correlation matrix of {@code symbols} in {@code currency} from {@code cutoff} (epoch seconds) on. */
+    public CorrelationMatrix correlations(List<String> symbols, long cutoff, String currency, Method method) {
+        ReturnMatrixService.ReturnMatrix matrix = returnMatrices.matrix(symbols, cutoff, currency);
+        // Row of each matrix column in the result.
+        int[] index = new int[symbols.size()];
+        for (int i = 0; i < index.length; i++) index[i] = i;
+        if (matrix == null) {
+            // Leave out the symbols that void the matrix (each looked up alone, which is cached too).
+            List<String> covered = new ArrayList<>();
+            int count = 0;
+            for (int i = 0; i < symbols.size(); i++) {
+                if (returnMatrices.matrix(List.of(symbols.get(i)), cutoff, currency) == null) continue;
+                covered.add(symbols.get(i));
+                index[count++] = i;
+            }
+            index = Arrays.copyOf(index, count);
+            matrix = covered.isEmpty() ? null : returnMatrices.matrix(covered, cutoff, currency);
+        }
+        if (matrix == null) {
+            return new CorrelationMatrix(List.copyOf(symbols), currency, method.name().toLowerCase(Locale.US), 0,
+                    null, null, new Double[symbols.size()][symbols.size()]);
+        }
+        ReturnMatrixService.ReturnMatrix m = matrix;
+        int[] rows = index;
+        String key = m.cacheKey() == null ? null : m.cacheKey() + "|" + symbols + "|" + method;
+        return cache.get(key, k -> build(symbols, rows, m, method));
+    }
+
+    private CorrelationMatrix build(List<String> symbols, int[] index, ReturnMatrixService.ReturnMatrix m,
+                                    Method method) {
+        int n = symbols.size();
+        Double[][] out = new Double[n][n];
+        if (m.days() >= MIN_DAYS) {
+            double[][] columns = new double[m.assets()][];
+            pool.invoke(new NormalizeTask(m.returns(), columns, method, 0, columns.length));
+            List<int[]> blocks = new ArrayList<>();
+            for (int a = 0; a < columns.length; a += BLOCK) {
+                for (int b = a; b < columns.length; b += BLOCK) blocks.add(new int[]{a, b});
+            }
+            pool.invoke(new BlockTask(columns, blocks, index, out, 0, blocks.size()));
+        }
+        return new CorrelationMatrix(List.copyOf(symbols), m.currency(), method.name().toLowerCase(Locale.US),
+                m.days(), m.start(), m.days() == 0 ? m.start() : m.timestamps()[m.days() - 1], out);
+    }
+
+    /**
+     * Each column centered and scaled to unit length, so the dot product of two is their Pearson correlation;
+     * {@code null} for a constant column. Spearman columns are replaced by their ranks first.
+     */
+    private static final class NormalizeTask extends RecursiveAction {
+        private final double[][] returns, columns;
+        private final Method method;
+        private final int from, to;
+
+        NormalizeTask(double[][] returns, double[][] columns, Method method, int from, int to) {
+            this.returns = returns;
+            this.columns = columns;
+            this.method = method;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new NormalizeTask(returns, columns, method, from, mid),
+                        new NormalizeTask(returns, columns, method, mid, to));
+                return;
+            }
+            double[] c = method == Method.SPEARMAN ? ranks(returns[from]) : returns[from].clone();
+            double mean = 0;
+            for (double v : c) mean += v;
+            mean /= c.length;
+            double ss = 0;
+            for (int i = 0; i < c.length; i++) {
+                c[i] -= mean;
+                ss += c[i] * c[i];
+            }
+            if (ss == 0) return;
+            double scale = 1 / Math.sqrt(ss);
+            for (int i = 0; i < c.length; i++) c[i] *= scale;
+            columns[from] = c;
+        }
+    }
+
+    /** The correlations of blocks {@code [from, to)}, each a square of symbol pairs in the upper triangle. */
+    private static final class BlockTask extends RecursiveAction {
+        private final double[][] columns;
+        private final List<int[]> blocks;
+        private final int[] index;
+        private final Double[][] out;
+        private final int from, to;
+
+        BlockTask(double[][] columns, List<int[]> blocks, int[] index, Double[][] out, int from, int to) {
+            this.columns = columns;
+            this.blocks = blocks;
+            this.index = index;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BlockTask(columns, blocks, index, out, from, mid),
+                        new BlockTask(columns, blocks, index, out, mid, to));
+                return;
+            }
+            int[] block = blocks.get(from);
+            int aEnd = Math.min(block[0] + BLOCK, columns.length), bEnd = Math.min(block[1] + BLOCK, columns.length);
+            for (int a = block[0]; a < aEnd; a++) {
+                double[] x = columns[a];
+                if (x == null) continue;
+                for (int b = Math.max(a, block[1]); b < bEnd; b++) {
+                    double[] y = columns[b];
+                    if (y == null) continue;
+                    double dot = 0;
+                    for (int i = 0; i < x.length; i++) dot += x[i] * y[i];
+                    Double r = a == b ? 1.0 : Math.max(-1, Math.min(1, dot));
+                    out[index[a]][index[b]] = r;
+                    out[index[b]][index[a]] = r;
+                }
+            }
+        }
+    }
+
+    /** Ranks 1..n of {@code values}, ties sharing their average rank. */
+    static double[] ranks(double[] values) {
+        int n = values.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (i, j) -> Double.compare(values[i], values[j]));
+        double[] out = new double[n];
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j + 1 < n && values[order[j + 1]] == values[order[i]]) j++;
+            double rank = (i + j) / 2.0 + 1;
+            for (int k = i; k <= j; k++) out[order[k]] = rank;
+            i = j + 1;
+        }
+        return out;
+    }
+}
@@ -1,100 +1,306 @@
 package org.example.indexcurrency.service;
 
+import org.example.indexcurrency.model.BarInterval;
 import org.example.indexcurrency.model.ChartData;
+import org.example.indexcurrency.model.SeriesSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 @Service
 public class CsvCacheService {
 
     private static final Logger log = LoggerFactory.getLogger(CsvCacheService.class);
     private static final long STALE_THRESHOLD_SECONDS = 24 * 60 * 60;
+    // Yahoo incremental fetches start this many cached bars back, so the overlap can re-anchor adjClose.
+    private static final int YAHOO_OVERLAP_BARS = 5;
+    static final String MAX_RANGE = "max";
+    // Coverage of "max": longer than any history the sources serve, so only a "max" fetch satisfies it.
+    private static final long MAX_RANGE_SECONDS = 100 * 365 * 86400L;
+    // After a failed full re-fetch for a longer range, serve the cached span this long before trying again.
+    private static final long FULL_FETCH_RETRY_SECONDS = 6 * 60 * 60;
 
     private final Path cacheDir;
     private final YahooFinanceService yahooService;
     private final InvestingFinanceService investingService;
     private final HandelsbankenFinanceService handelsbankenService;
     private final GitCacheService gitService;
+    private final ApplicationEventPublisher events;
+    private final SegmentedSeriesStore store;
+    private final ResidentSeriesStore resident;
     private final ConcurrentHashMap<String, ReentrantLock> symbolLocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> fullFetchFailedAt = new ConcurrentHashMap<>();
+
+    /** A stored daily series as described by its manifest, without reading its rows. */
+    public record SeriesInfo(String key, String symbol, String source, String fetchedRange, long firstTs,
+                             long lastTs, int rows, long modifiedMillis) {}
 
     public CsvCacheService(@Value("${cache.dir:cache}") String cacheDir,
                            YahooFinanceService yahooService,
                            InvestingFinanceService investingService,
                            HandelsbankenFinanceService handelsbankenService,
-                           GitCacheService gitService) {
+                           GitCacheService gitService,
+                           ApplicationEventPublisher events,
+                           ResidentSeriesStore resident) {
         this.cacheDir = Path.of(cacheDir);
+        this.store = new SegmentedSeriesStore(this.cacheDir.resolve("series"));
         this.yahooService = yahooService;
         this.investingService = investingService;
         this.handelsbankenService = handelsbankenService;
         this.gitService = gitService;
+        this.events = events;
+        this.resident = resident;
     }
 
+    /**
+     * Series for a symbol at the requested bar interval, windowed to {@code range} back from now (everything
+     * for {@code max}). Only the daily series (year segments, see {@link SegmentedSeriesStore}) and the
+     * intraday tiers ({@link BarInterval#storedTier()}) are cached; other intervals are rolled up from the
+     * stored tier, so e.g. weekly and monthly views are derived from the daily cache without a download.
+     */
     public ChartData getChartData(String symbol, String range, String interval) {
-        ReentrantLock lock = symbolLocks.computeIfAbsent(sanitizeSymbol(symbol), k -> new ReentrantLock());
+        return getChartData(symbol, range, interval, null, null);
+    }
+
+    /**
+     * As {@link #getChartData(String, String, String)}, windowed to {@code [fromTs, toTs]} (epoch seconds,
+     * inclusive). A {@code null} bound falls back to the range's start and the latest bar respectively.
+     * {@code range} alone decides how much history is fetched and cached; the window only trims the response.
+     * The result may be a read-only {@link ChartData#window view} and must not be mutated.
+     */
+    public ChartData getChartData(String symbol, String range, String interval, Long fromTs, Long toTs) {
+        BarInterval requested = BarInterval.parse(interval);
+        BarInterval tier = requested.storedTier();
+        long from = fromTs != null ? fromTs : rangeStart(range);
+        long to = toTs != null ? toTs : Long.MAX_VALUE;
+        if (from > to) throw new IllegalArgumentException("from must not be after to");
+        String key = seriesKey(symbol, tier);
+        countRequest(key);
+        ChartData stored;
+        ReentrantLock lock = symbolLocks.computeIfAbsent(key, k -> new ReentrantLock());
         lock.lock();
         try {
-            return getChartDataLocked(symbol, range, interval);
+            stored = tier.isIntraday()
+                    ? getIntradayLocked(symbol, range, tier)
+                    : getChartDataLocked(symbol, range, from, to);
         } finally {
             lock.unlock();
         }
+        return (requested == tier ? stored : BarRollup.rollup(stored, requested)).window(from, to);
     }
 
-    private ChartData getChartDataLocked(String symbol, String range, String interval) {
-        Path csvFile = cacheDir.resolve(sanitizeSymbol(symbol) + ".csv");
+    /**
+     * Count a request for {@code symbol} at {@code interval} that was answered without {@link #getChartData}
+     * (e.g. from a response cache), so the hot set still reflects what users ask for.
+     */
+    public void recordRequest(String symbol, String interval) {
+        countRequest(seriesKey(symbol, BarInterval.parse(interval).storedTier()));
+    }
 
-        if (Files.exists(csvFile)) {
-            ChartData cached = readCsv(csvFile, symbol);
-            if (cached != null && !cached.getTimestamps().isEmpty()) {
-                long lastTs = cached.getLastTimestamp();
-
-                // Check if cached data covers the requested range
-                long rangeSeconds = parseRangeToSeconds(range);
-                long cachedFetchedSeconds = parseRangeToSeconds(cached.getFetchedRange());
-                long cachedSpan = lastTs - cached.getTimestamps().get(0);
-                if (cachedSpan < rangeSeconds - 30 * 86400L && cachedFetchedSeconds < rangeSeconds) {
-                    log.info("Cache for {} covers {}d but range {} requires {}d, re-fetching full",
-                            symbol, cachedSpan / 86400, range, rangeSeconds / 86400);
+    private void countRequest(String key) {
+        requests.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    /** {@link #getChartData} calls (and {@link #recordRequest recorded} requests) per series key since startup. */
+    public Map<String, Long> requestCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        requests.forEach((key, n) -> counts.put(key, n.sum()));
+        return counts;
+    }
+
+    /**
+     * Describe a cached daily series from its manifest (migrating a legacy flat file first), or {@code null} if
+     * it isn't stored.
+     */
+    public SeriesInfo describe(String key) {
+        ReentrantLock lock = symbolLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            migrateLegacy(key);
+            SegmentedSeriesStore.Manifest m = store.readManifest(key);
+            if (m == null) return null;
+            return new SeriesInfo(key, m.meta().getSymbol(), m.meta().getSource(), m.meta().getFetchedRange(),
+                    m.firstTs(), m.lastTs(), m.rows(), m.modifiedMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Load a cached daily series into the {@link ResidentSeriesStore} (and its hot set) without refreshing it.
+     * Returns the number of rows loaded, 0 if the series isn't stored or residency is disabled.
+     */
+    public int preload(String key) {
+        if (!resident.enabled()) return 0;
+        ReentrantLock lock = symbolLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            SegmentedSeriesStore.Manifest manifest = store.readManifest(key);
+            if (manifest == null) return 0;
+            ChartData data = readShared(key, manifest);
+            SeriesSnapshot hot = resident.snapshot(key, manifest.modifiedMillis());
+            return hot != null ? hot.rows() : data == null ? 0 : data.getTimestamps().size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Until when (epoch millis) a result of {@link #getChartData} is what a repeat call would return: its stored
+     * version plus the tier's refresh threshold (a day for the daily series, one bar for intraday tiers), after
+     * which the next call refreshes. Rewrites before then publish a {@link SeriesUpdatedEvent}. 0 if unversioned.
+     */
+    public long freshUntilMillis(ChartData data, String interval) {
+        if (data.getVersion() == 0) return 0;
+        BarInterval tier = BarInterval.parse(interval).storedTier();
+        long seconds = tier.isIntraday() ? tier.seconds() : STALE_THRESHOLD_SECONDS;
+        return data.getVersion() + seconds * 1000;
+    }
+
+    /**
+     * Cache keys (sanitized symbols) of every cached daily price series: the segmented store plus any legacy
+     * flat {@code <key>.csv} not yet migrated. Flat files whose first line is not a {@code # symbol=} header
+     * (e.g. the Fama-French factor CSV) are not price series and are skipped.
+     */
+    public List<String> cachedKeys() {
+        Set<String> keys = new LinkedHashSet<>(store.keys());
+        if (!Files.isDirectory(cacheDir)) return new ArrayList<>(keys);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, "*.csv")) {
+            for (Path file : files) {
+                try (BufferedReader br = Files.newBufferedReader(file)) {
+                    String first = br.readLine();
+                    if (first != null && first.startsWith("# symbol=")) {
+                        String name = file.getFileName().toString();
+                        keys.add(name.substring(0, name.length() - 4));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list cache dir {}: {}", cacheDir, e.getMessage());
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Read-modify-write a cached series under its symbol lock. {@code update} mutates the series in place and
+     * returns the git commit message, or {@code null} if it changed nothing (then nothing is written).
+     *
+     * @return whether the series was rewritten
+     */
+    public boolean updateCached(String key, Function<ChartData, String> update) {
+        ReentrantLock lock = symbolLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            migrateLegacy(key);
+            SegmentedSeriesStore.Manifest manifest = store.readManifest(key);
+            ChartData cached = manifest == null ? null : readDaily(key, manifest);
+            if (cached == null || cached.getTimestamps().isEmpty()) return false;
+            String message = update.apply(cached);
+            if (message == null) return false;
+            writeDaily(key, cached);
+            gitService.commitChanges(message);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Daily series, fetched or refreshed as needed. A fresh cache is served from the {@link ResidentSeriesStore}
+     * when it holds the stored version, else read in full and made resident (or, with residency disabled, read
+     * only for the segments overlapping {@code [fromTs, toTs]}); a refresh reads and rewrites the whole series.
+     */
+    private ChartData getChartDataLocked(String symbol, String range, long fromTs, long toTs) {
+        String interval = BarInterval.DAILY.code();
+        String key = sanitizeSymbol(symbol);
+        migrateLegacy(key);
+        SegmentedSeriesStore.Manifest manifest = store.readManifest(key);
+
+        if (manifest != null && manifest.rows() > 0) {
+            long lastTs = manifest.lastTs();
+
+            // Check if cached data covers the requested range
+            long rangeSeconds = parseRangeToSeconds(range);
+            long cachedFetchedSeconds = parseRangeToSeconds(manifest.meta().getFetchedRange());
+            long cachedSpan = lastTs - manifest.firstTs();
+            // Synthetic series (e.g. the Iris Bond backfill proxy) have no upstream to re-fetch from.
+            // A failed attempt backs off for FULL_FETCH_RETRY_SECONDS rather than re-downloading on every request.
+            Long failedAt = fullFetchFailedAt.get(key);
+            boolean backingOff = failedAt != null
+                    && Instant.now().getEpochSecond() - failedAt < FULL_FETCH_RETRY_SECONDS;
+            if (cachedSpan < rangeSeconds - 30 * 86400L && cachedFetchedSeconds < rangeSeconds
+                    && !"synthetic".equals(manifest.meta().getSource()) && !backingOff) {
+                log.info("Cache for {} covers {}d but range {} requires {}d, re-fetching full",
+                        symbol, cachedSpan / 86400, range, rangeSeconds / 86400);
+                try {
                     ChartData data = fetchBest(symbol, range, interval);
                     data.setFetchedRange(range);
-                    writeCsv(csvFile, data);
+                    writeDaily(key, data);
                     gitService.commitChanges("Update " + symbol);
+                    fullFetchFailedAt.remove(key);
                     return data;
+                } catch (Exception e) {
+                    fullFetchFailedAt.put(key, Instant.now().getEpochSecond());
+                    log.warn("Full re-fetch failed for {}, serving the cached {}d for the next {}h: {}", symbol,
+                            cachedSpan / 86400, FULL_FETCH_RETRY_SECONDS / 3600, e.getMessage());
                 }
+            }
 
-                long fileAge;
-                try {
-                    fileAge = Instant.now().getEpochSecond() - Files.getLastModifiedTime(csvFile).toInstant().getEpochSecond();
-                } catch (IOException e) {
-                    fileAge = Long.MAX_VALUE;
+            long fileAge = Instant.now().getEpochSecond() - manifest.modifiedMillis() / 1000;
+            if (fileAge < STALE_THRESHOLD_SECONDS) {
+                ChartData window = resident.enabled()
+                        ? readShared(key, manifest)
+                        : store.read(key, fromTs, toTs);
+                if (window != null) {
+                    log.info("Cache fresh for {} (manifest written {}s ago)", symbol, fileAge);
+                    return window;
                 }
+            }
 
-                if (fileAge < STALE_THRESHOLD_SECONDS) {
-                    log.info("Cache fresh for {} (file written {}s ago)", symbol, fileAge);
-                    return cached;
-                }
+            ChartData cached = readDaily(key, manifest);
+            if (cached != null && !cached.getTimestamps().isEmpty()) {
 
-                log.info("Cache stale for {} (file written {}s ago, source={}), fetching incremental",
+                log.info("Cache stale for {} (manifest written {}s ago, source={}), fetching incremental",
                         symbol, fileAge, cached.getSource());
                 try {
-                    ChartData incremental = switch (cached.getSource()) {
-                        case "investing" -> investingService.fetchIncremental(symbol, lastTs);
-                        case "handelsbanken" -> handelsbankenService.fetchIncremental(symbol, lastTs);
-                        default -> yahooService.fetchIncremental(symbol, lastTs, interval);
-                    };
-                    cached.merge(incremental);
+                    switch (cached.getSource()) {
+                        case "investing" -> cached.merge(investingService.fetchIncremental(symbol, lastTs));
+                        case "handelsbanken" -> cached.merge(handelsbankenService.fetchIncremental(symbol, lastTs));
+                        default -> {
+                            // Yahoo back-adjusts adjClose to its latest dividend, so re-fetch a few cached bars
+                            // and rescale the existing history onto the new base instead of appending a jump.
+                            List<Long> ts = cached.getTimestamps();
+                            long overlapFrom = ts.get(Math.max(0, ts.size() - YAHOO_OVERLAP_BARS));
+                            double ratio = cached.mergeRescalingAdjClose(
+                                    yahooService.fetchIncremental(symbol, overlapFrom, interval));
+                            if (ratio != 1.0) {
+                                log.info("Rescaled cached adjClose for {} by {} onto Yahoo's current dividend base",
+                                        symbol, ratio);
+                            }
+                        }
+                    }
                     if ("investing".equals(cached.getSource())) {
                         // Newly appended investing.com rows are always recent (within Yahoo's coverage),
                         // so Yahoo dividends suffice; apply only past lastTs to avoid double-counting the
@@ -106,7 +312,7 @@ public class CsvCacheService {
                         }
                         cached.recomputeAdjCloseFromDividends();
                     }
-                    writeCsv(csvFile, cached);
+                    writeDaily(key, cached);
                     gitService.commitChanges("Update " + symbol);
                     return cached;
                 } catch (Exception e) {
@@ -119,11 +325,118 @@ public class CsvCacheService {
         log.info("No cache for {}, fetching full {}", symbol, range);
         ChartData data = fetchBest(symbol, range, interval);
         data.setFetchedRange(range);
-        writeCsv(csvFile, data);
+        writeDaily(key, data);
         gitService.commitChanges("Add " + symbol);
         return data;
     }
 
+    /**
+     * The whole stored series as a mutable copy: from memory when resident at the manifest's version, else read
+     * and kept.
+     */
+    private ChartData readDaily(String key, SegmentedSeriesStore.Manifest manifest) {
+        SeriesSnapshot hit = resident.snapshot(key, manifest.modifiedMillis());
+        if (hit != null) return hit.toChartData();
+        ChartData data = store.read(key);
+        if (data != null) resident.put(key, data);
+        return data;
+    }
+
+    /** As {@link #readDaily}, but a resident series is returned as a shared read-only view (no copy). */
+    private ChartData readShared(String key, SegmentedSeriesStore.Manifest manifest) {
+        SeriesSnapshot hit = resident.snapshot(key, manifest.modifiedMillis());
+        return hit != null ? hit.view() : readDaily(key, manifest);
+    }
+
+    /**
+     * Move a legacy flat {@code <key>.csv} into the segmented store. A flat file newer than the store's manifest
+     * (e.g. a hand-placed series like the Iris Bond backfill proxy) replaces the stored series.
+     */
+    private void migrateLegacy(String key) {
+        Path legacy = cacheDir.resolve(key + ".csv");
+        if (!Files.exists(legacy)) return;
+        try {
+            SegmentedSeriesStore.Manifest manifest = store.readManifest(key);
+            if (manifest != null && Files.getLastModifiedTime(legacy).toMillis() <= manifest.modifiedMillis()) {
+                Files.delete(legacy);
+                return;
+            }
+            ChartData data = readCsv(legacy, key);
+            if (data == null) return;
+            store.write(key, data);
+            resident.put(key, data);
+            Files.delete(legacy);
+            events.publishEvent(new SeriesUpdatedEvent(key, data.getVersion()));
+            log.info("Migrated {} to year segments ({} rows)", legacy, data.getTimestamps().size());
+            gitService.commitChanges("Migrate " + data.getSymbol() + " to year segments");
+        } catch (IOException e) {
+            log.error("Failed to migrate {}: {}", legacy, e.getMessage());
+        }
+    }
+
+    private void writeDaily(String key, ChartData data) {
+        try {
+            store.write(key, data);
+            resident.put(key, data);
+            events.publishEvent(new SeriesUpdatedEvent(key, data.getVersion()));
+        } catch (IOException e) {
+            log.error("Failed to write segmented cache {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Intraday tier (Yahoo only): a bounded window kept in {@code intraday/<interval>/}, refreshed once a bar
+     * has elapsed and trimmed to the tier's retention on every write. Not committed to git; it is scratch data
+     * Yahoo can always re-serve.
+     */
+    private ChartData getIntradayLocked(String symbol, String range, BarInterval tier) {
+        Path csvFile = cacheDir.resolve("intraday").resolve(tier.code()).resolve(sanitizeSymbol(symbol) + ".csv");
+        String key = seriesKey(symbol, tier);
+        long now = Instant.now().getEpochSecond();
+        long horizon = now - tier.retentionSeconds();
+
+        if (Files.exists(csvFile)) {
+            ChartData cached = readCsv(csvFile, symbol);
+            if (cached != null && !cached.getTimestamps().isEmpty() && cached.getLastTimestamp() > horizon) {
+                long fileAge = fileAgeSeconds(csvFile);
+                if (fileAge < tier.seconds()) {
+                    log.info("Intraday {} cache fresh for {} (file written {}s ago)", tier.code(), symbol, fileAge);
+                    return cached;
+                }
+                try {
+                    List<Long> ts = cached.getTimestamps();
+                    long overlapFrom = ts.get(Math.max(0, ts.size() - YAHOO_OVERLAP_BARS));
+                    cached.mergeRescalingAdjClose(yahooService.fetchIncremental(symbol, overlapFrom, tier.code()));
+                    cached.dropBefore(horizon);
+                    writeCsv(csvFile, cached);
+                    events.publishEvent(new SeriesUpdatedEvent(key, cached.getVersion()));
+                    return cached;
+                } catch (Exception e) {
+                    log.warn("Intraday {} refresh failed for {}, returning stale cache: {}", tier.code(), symbol,
+                            e.getMessage());
+                    return cached;
+                }
+            }
+        }
+
+        long span = Math.min(parseRangeToSeconds(range), tier.retentionSeconds());
+        log.info("No intraday {} cache for {}, fetching last {}d", tier.code(), symbol, span / 86400);
+        ChartData data = yahooService.fetchRange(symbol, now - span, now, tier.code());
+        data.setFetchedRange(range);
+        data.dropBefore(horizon);
+        writeCsv(csvFile, data);
+        events.publishEvent(new SeriesUpdatedEvent(key, data.getVersion()));
+        return data;
+    }
+
+    private static long fileAgeSeconds(Path file) {
+        try {
+            return Instant.now().getEpochSecond() - Files.getLastModifiedTime(file).toInstant().getEpochSecond();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
     /**
      * Fetch the symbol from both Yahoo and investing.com and return whichever series reaches further
      * back in time (longer history). investing.com is best-effort: if it fails we fall back to Yahoo,
@@ -213,23 +526,41 @@ public class CsvCacheService {
         return Instant.ofEpochSecond(epochSeconds).atZone(ZoneOffset.UTC).toLocalDate();
     }
 
+    /** Start of a range counted back from now; {@link Long#MIN_VALUE} (no bound) for {@code max}. */
+    private static long rangeStart(String range) {
+        if (MAX_RANGE.equals(range)) return Long.MIN_VALUE;
+        return Instant.now().getEpochSecond() - parseRangeToSeconds(range);
+    }
+
+    /**
+     * Length of a Yahoo-style range: {@code 5d}, {@code 3mo} (or the legacy {@code 3m}), {@code 2wk},
+     * {@code 10y}, {@code ytd}, {@code max}. Anything else is treated as the 5y default.
+     */
     private static long parseRangeToSeconds(String range) {
         if (range == null || range.isEmpty()) return 5 * 365 * 86400L;
-        char unit = range.charAt(range.length() - 1);
-        int value;
-        try {
-            value = Integer.parseInt(range.substring(0, range.length() - 1));
-        } catch (NumberFormatException e) {
-            return 5 * 365 * 86400L;
+        if (MAX_RANGE.equals(range)) return MAX_RANGE_SECONDS;
+        if ("ytd".equals(range)) {
+            LocalDate jan1 = LocalDate.now(ZoneOffset.UTC).withDayOfYear(1);
+            return Instant.now().getEpochSecond() - jan1.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
         }
-        return switch (unit) {
-            case 'd' -> value * 86400L;
-            case 'm' -> value * 30L * 86400L;
-            case 'y' -> value * 365L * 86400L;
+        int digits = 0;
+        while (digits < range.length() && Character.isDigit(range.charAt(digits))) digits++;
+        if (digits == 0) return 5 * 365 * 86400L;
+        long value = Long.parseLong(range.substring(0, digits));
+        return switch (range.substring(digits)) {
+            case "d" -> value * 86400L;
+            case "wk" -> value * 7L * 86400L;
+            case "m", "mo" -> value * 30L * 86400L;
+            case "y" -> value * 365L * 86400L;
             default -> 5 * 365 * 86400L;
         };
     }
 
+    /** Key of a stored series (and its lock): the sanitized symbol, plus {@code @<interval>} for intraday tiers. */
+    static String seriesKey(String symbol, BarInterval tier) {
+        return tier.isIntraday() ? sanitizeSymbol(symbol) + "@" + tier.code() : sanitizeSymbol(symbol);
+    }
+
     static String sanitizeSymbol(String symbol) {
         return symbol.replace("=", "_EQ_")
                 .replace("/", "_")
@@ -246,23 +577,11 @@ public class CsvCacheService {
     private void writeCsv(Path file, ChartData data) {
         try {
             Files.createDirectories(file.getParent());
-            try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(file))) {
-                pw.println("# symbol=" + data.getSymbol());
-                pw.println("# currency=" + data.getCurrency());
-                pw.println("# shortName=" + data.getShortName());
-                pw.println("# exchangeTimezoneName=" + data.getExchangeTimezoneName());
-                if (data.getFetchedRange() != null) pw.println("# fetchedRange=" + data.getFetchedRange());
-                if (data.getSource() != null) pw.println("# source=" + data.getSource());
-                pw.println("date,open,high,low,close,adjclose,volume,dividend");
-                for (int i = 0; i < data.getTimestamps().size(); i++) {
-                    pw.printf(java.util.Locale.US, "%d,%.6f,%.6f,%.6f,%.6f,%.6f,%d,%.6f%n",
-                            data.getTimestamps().get(i),
-                            data.getOpen().get(i), data.getHigh().get(i),
-                            data.getLow().get(i), data.getClose().get(i),
-                            data.getAdjClose().get(i), data.getVolume().get(i),
-                            data.getDividends().get(i));
-                }
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                SeriesCsv.writeMeta(out, data);
+                SeriesCsv.writeRows(out, data, 0, data.getTimestamps().size());
             }
+            data.setVersion(Files.getLastModifiedTime(file).toMillis());
             log.info("Wrote cache CSV: {}", file);
         } catch (IOException e) {
             log.error("Failed to write CSV {}: {}", file, e.getMessage());
@@ -270,39 +589,10 @@ public class CsvCacheService {
     }
 
     private ChartData readCsv(Path file, String symbol) {
-        try (BufferedReader br = Files.newBufferedReader(file)) {
-            ChartData data = new ChartData();
-            data.setSymbol(symbol);
-            data.setCurrency("USD");
-            data.setShortName(symbol);
-
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.startsWith("# symbol=")) data.setSymbol(line.substring(9));
-                else if (line.startsWith("# currency=")) data.setCurrency(line.substring(11));
-                else if (line.startsWith("# shortName=")) data.setShortName(line.substring(12));
-                else if (line.startsWith("# exchangeTimezoneName=")) data.setExchangeTimezoneName(line.substring(23));
-                else if (line.startsWith("# fetchedRange=")) data.setFetchedRange(line.substring(15));
-                else if (line.startsWith("# source=")) data.setSource(line.substring(9));
-                else if (line.startsWith("#") || line.startsWith("date,")) continue;
-                else {
-                    String[] parts = line.split(",");
-                    if (parts.length >= 7) {
-                        // dividend is the optional 8th column; legacy 7-column files default it to 0.
-                        double dividend = parts.length >= 8 ? Double.parseDouble(parts[7]) : 0.0;
-                        data.addRow(
-                                Long.parseLong(parts[0]),
-                                Double.parseDouble(parts[1]),
-                                Double.parseDouble(parts[2]),
-                                Double.parseDouble(parts[3]),
-                                Double.parseDouble(parts[4]),
-                                Double.parseDouble(parts[5]),
-                                Long.parseLong(parts[6]),
-                                dividend
-                        );
-                    }
-                }
-            }
+        try (InputStream in = Files.newInputStream(file)) {
+            ChartData data = SeriesCsv.newSeries(symbol);
+            SeriesCsv.read(in, data, 1.0);
+            data.setVersion(Files.getLastModifiedTime(file).toMillis());
             return data;
         } catch (IOException e) {
             log.error("Failed to read CSV {}: {}", file, e.getMessage());
@@ -0,0 +1,144 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.ChartData;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calendar days as compact integers (days since 1970-01-01, i.e. {@link LocalDate#toEpochDay()}), so series from
+ * different sources can be joined by walking sorted {@code int[]} columns in step instead of matching timestamps
+ * approximately, looking up date strings or probing {@code TreeMap}s.
+ *
+ * <p>A bar's day is its date in the series' exchange timezone (like {@link BarRollup}), so a Tokyo bar stamped the
+ * evening before in UTC and a New York bar of the same session share a day. Day columns are ascending; a day may
+ * repeat (e.g. a live bar after the close), in which case the last row of the day is the one matched.
+ */
+final class DayIndex {
+
+    private DayIndex() {}
+
+    /** How {@link #match} picks a source row for a target day. */
+    enum Fill {
+        /** Only a row on the same day. */
+        EXACT,
+        /** The last row on or before the day (forward fill). */
+        PREVIOUS,
+        /** The closest row, the earlier one only when strictly closer (the frontend's {@code closestIndex}). */
+        NEAREST
+    }
+
+    /** Days present in every joined column, and for each column the row holding each of those days. */
+    record Join(int[] days, int[][] rows) {
+        int size() { return days.length; }
+    }
+
+    static int of(LocalDate date) {
+        return (int) date.toEpochDay();
+    }
+
+    static int of(long epochSeconds, ZoneId zone) {
+        Instant t = Instant.ofEpochSecond(epochSeconds);
+        return (int) Math.floorDiv(epochSeconds + zone.getRules().getOffset(t).getTotalSeconds(), 86400L);
+    }
+
+    static LocalDate date(int day) {
+        return LocalDate.ofEpochDay(day);
+    }
+
+    /** The exchange-local day of each of {@code data}'s bars. */
+    static int[] days(ChartData data) {
+        ZoneId zone = BarRollup.zoneOf(data.getExchangeTimezoneName());
+        return days(data.getTimestamps(), 0, data.getTimestamps().size(), zone);
+    }
+
+    /** The day in {@code zone} of {@code timestamps[from..to)}. */
+    static int[] days(List<Long> timestamps, int from, int to, ZoneId zone) {
+        ZoneRules rules = zone.getRules();
+        int[] out = new int[to - from];
+        if (rules.isFixedOffset()) {
+            long offset = rules.getOffset(Instant.EPOCH).getTotalSeconds();
+            for (int i = from; i < to; i++) out[i - from] = (int) Math.floorDiv(timestamps.get(i) + offset, 86400L);
+            return out;
+        }
+        for (int i = from; i < to; i++) {
+            long ts = timestamps.get(i);
+            out[i - from] = (int) Math.floorDiv(ts + rules.getOffset(Instant.ofEpochSecond(ts)).getTotalSeconds(),
+                    86400L);
+        }
+        return out;
+    }
+
+    /**
+     * For each of {@code target}'s days, the row of {@code source} chosen by {@code fill} at most
+     * {@code toleranceDays} away, or -1. Both columns ascending; one forward walk over each.
+     */
+    static int[] match(int[] source, int sourceSize, int[] target, Fill fill, int toleranceDays) {
+        int[] out = new int[target.length];
+        int j = 0;
+        for (int i = 0; i < target.length; i++) {
+            int day = target[i];
+            // j: the last source row on or before day, else the first row after it.
+            while (j + 1 < sourceSize && source[j + 1] <= day) j++;
+            int row = switch (fill) {
+                case EXACT -> j < sourceSize && source[j] == day ? j : -1;
+                case PREVIOUS -> j < sourceSize && source[j] <= day ? j : -1;
+                case NEAREST -> nearest(source, sourceSize, j, day);
+            };
+            out[i] = row >= 0 && Math.abs((long) source[row] - day) <= toleranceDays ? row : -1;
+        }
+        return out;
+    }
+
+    private static int nearest(int[] source, int sourceSize, int j, int day) {
+        if (sourceSize == 0) return -1;
+        if (source[j] >= day || j + 1 == sourceSize) return lastOfDay(source, sourceSize, j);
+        int after = lastOfDay(source, sourceSize, j + 1);
+        return day - source[j] < source[after] - day ? j : after;
+    }
+
+    private static int lastOfDay(int[] source, int sourceSize, int row) {
+        while (row + 1 < sourceSize && source[row + 1] == source[row]) row++;
+        return row;
+    }
+
+    /** Inner join of ascending day columns: one merge walk, the last row of a repeated day. */
+    static Join join(int[]... columns) {
+        int k = columns.length;
+        int[] at = new int[k];
+        int cap = Integer.MAX_VALUE;
+        for (int[] c : columns) cap = Math.min(cap, c.length);
+        int[] days = new int[cap];
+        int[][] rows = new int[k][cap];
+        int n = 0;
+        outer:
+        while (true) {
+            int day = Integer.MIN_VALUE;
+            for (int c = 0; c < k; c++) {
+                if (at[c] >= columns[c].length) break outer;
+                day = Math.max(day, columns[c][at[c]]);
+            }
+            boolean all = true;
+            for (int c = 0; c < k; c++) {
+                int[] col = columns[c];
+                while (at[c] < col.length && col[at[c]] < day) at[c]++;
+                if (at[c] >= col.length) break outer;
+                if (col[at[c]] != day) all = false;
+            }
+            if (!all) continue;
+            days[n] = day;
+            for (int c = 0; c < k; c++) {
+                int[] col = columns[c];
+                while (at[c] + 1 < col.length && col[at[c] + 1] == day) at[c]++;
+                rows[c][n] = at[c]++;
+            }
+            n++;
+        }
+        for (int c = 0; c < k; c++) rows[c] = Arrays.copyOf(rows[c], n);
+        return new Join(Arrays.copyOf(days, n), rows);
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.ChartData;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Display-resolution copies of a chart for rendering. Largest-Triangle-Three-Buckets keeps the first and last
+ * bar and, per bucket, the bar forming the largest triangle with the previously kept bar and the next bucket's
+ * average, which preserves the visual peaks and troughs a plain stride would skip. Selection runs on adjClose
+ * (what the charts plot); kept rows carry all their columns unchanged.
+ *
+ * <p>Results are held in a small LRU keyed by the series' stored {@link ChartData#getVersion() version} and the
+ * exact window, so repeated renders of the same panel are free and a cache refresh never serves stale points.
+ * Downsampled series are for display only &mdash; metrics must keep using the full-resolution data.
+ */
+@Service
+public class DownsamplingService {
+
+    private final LruCache<String, ChartData> cache = new LruCache<>(512);
+
+    /**
+     * {@code data} reduced to at most {@code maxPoints} bars (returned as-is if it is already that small).
+     *
+     * @param interval the bar interval {@code data} is at, part of the cache key
+     */
+    public ChartData downsample(ChartData data, String interval, int maxPoints) {
+        if (maxPoints < 3) throw new IllegalArgumentException("maxPoints must be at least 3");
+        if (data.getTimestamps().size() <= maxPoints) return data;
+        String rows = data.versionKey();
+        String key = rows == null ? null : rows + "|" + interval + "|lttb" + maxPoints;
+        return cache.get(key, k -> select(data, lttb(data.getTimestamps(), data.getAdjClose(), maxPoints)));
+    }
+
+    /** Indices (ascending) chosen by LTTB; {@code n > threshold >= 3}. */
+    static int[] lttb(List<Long> x, List<Double> y, int threshold) {
+        int n = x.size();
+        int[] picked = new int[threshold];
+        double every = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        picked[0] = 0;
+        for (int i = 0; i < threshold - 2; i++) {
+            // Average of the next bucket, the third triangle vertex.
+            int avgFrom = (int) Math.floor((i + 1) * every) + 1;
+            int avgTo = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+            double avgX = 0, avgY = 0;
+            for (int j = avgFrom; j < avgTo; j++) {
+                avgX += x.get(j);
+                avgY += y.get(j);
+            }
+            int avgLen = avgTo - avgFrom;
+            avgX /= avgLen;
+            avgY /= avgLen;
+
+            int from = (int) Math.floor(i * every) + 1;
+            int to = (int) Math.floor((i + 1) * every) + 1;
+            double ax = x.get(a), ay = y.get(a);
+            double maxArea = -1;
+            int next = from;
+            for (int j = from; j < to; j++) {
+                double area = Math.abs((ax - avgX) * (y.get(j) - ay) - (ax - x.get(j)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            picked[i + 1] = next;
+            a = next;
+        }
+        picked[threshold - 1] = n - 1;
+        return picked;
+    }
+
+    private static ChartData select(ChartData src, int[] rows) {
+        ChartData out = new ChartData();
+        out.copyMetaFrom(src);
+        for (int i : rows) {
+            out.addRow(src.getTimestamps().get(i), src.getOpen().get(i), src.getHigh().get(i), src.getLow().get(i),
+                    src.getClose().get(i), src.getAdjClose().get(i), src.getVolume().get(i),
+                    src.getDividends().get(i));
+        }
+        return out;
+    }
+}
@@ -45,11 +45,15 @@ public class FamaFrenchService {
         this.cacheFile = Path.of(cacheDir, "fama-french-5factor.csv");
     }
 
-    public synchronized Map<String, Object> getFactors() {
-        if (cached != null) return cached;
-        String csv = loadCsv();
-        cached = (csv == null) ? emptyResult() : parse(csv);
-        return cached;
+    public Map<String, Object> getFactors() {
+        Map<String, Object> result = cached;
+        if (result != null) return result; // loaded (usually by the startup warm-up): no lock
+        synchronized (this) {
+            if (cached != null) return cached;
+            String csv = loadCsv();
+            cached = (csv == null) ? emptyResult() : parse(csv);
+            return cached;
+        }
     }
 
     private Map<String, Object> emptyResult() {
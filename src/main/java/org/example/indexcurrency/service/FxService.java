@@ -0,0 +1,297 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.BarInterval;
+import org.example.indexcurrency.model.ChartData;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Currency conversion over the cached Yahoo forex series, a port of the frontend's {@code convertPrice}: every
+ * price goes through USD, and XDR is valued from the IMF basket.
+ *
+ * <p>Instead of looking up the closest forex bar per price (several per price for XDR), each {@code from -> to}
+ * conversion is precomputed once per forex refresh as a grid of cross rates, one per {@link DayIndex day}: the
+ * last rate of that day, forward-filled over days without one (weekends, holidays) and back-filled before the
+ * first. Converting a column is then one multiply per row, the grid indexed by the price's exchange-local day.
+ * Grids are keyed by the versions of the pairs they read and dropped as soon as one of those pairs is rewritten
+ * ({@link SeriesUpdatedEvent}).
+ */
+@Service
+public class FxService {
+
+    /** Forex pairs (frontend keys) and their Yahoo symbols. */
+    static final Map<String, String> PAIRS = Map.of(
+            "EURUSD", "EURUSD=X",
+            "USDSEK", "USDSEK=X",
+            "GBPUSD", "GBPUSD=X",
+            "USDJPY", "USDJPY=X",
+            "USDCNY", "USDCNY=X");
+
+    /** Units of each currency in one XDR (SDR basket). */
+    static final Map<String, Double> XDR_BASKET = basket();
+
+    /** Currencies {@link #convert} supports. */
+    public static final Set<String> CURRENCIES = Set.of("USD", "EUR", "GBP", "SEK", "JPY", "CNY", "XDR");
+
+    /**
+     * {@code from -> to} rates by day: {@code rates[d]} applies to prices on day {@code firstDay + d}; days
+     * outside the grid use its first or last rate. All NaN when a needed pair has no rates.
+     */
+    private record CrossRates(int firstDay, double[] rates, Set<String> sources) {
+        double at(int day) {
+            return rates[Math.max(0, Math.min(rates.length - 1, day - firstDay))];
+        }
+    }
+
+    private final CsvCacheService cacheService;
+    private final LruCache<String, CrossRates> grids = new LruCache<>(64);
+
+    public FxService(CsvCacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+    /**
+     * {@code data} with every price column (and the dividends) converted to {@code to}, its currency set to
+     * {@code to} and its version to the newest of the series and the pairs read, or {@code data} itself when it
+     * is already in {@code to}. Rows keep their positions; a missing rate converts to NaN.
+     */
+    public ChartData convert(ChartData data, String to) {
+        if (!CURRENCIES.contains(to)) throw new IllegalArgumentException("Unsupported currency: " + to);
+        return conversion(currencyOf(data), to).convert(data);
+    }
+
+    /**
+     * A {@code from -> to} conversion over the forex series as read now. Each pair is read once, and its cache
+     * key, rate grid and version all come from that read: a read is a locked cache lookup that may refresh the
+     * pair and counts as a request for it.
+     */
+    public Conversion conversion(String from, String to) {
+        Map<String, ChartData> pairs = new LinkedHashMap<>();
+        if (!from.equals(to)) {
+            for (String pair : pairsFor(from, to)) pairs.put(pair, pairData(pair));
+        }
+        return new Conversion(from, to, pairs);
+    }
+
+    /** One {@code from -> to} conversion bound to the forex series read by {@link #conversion}. */
+    public final class Conversion {
+        private final String from, to;
+        private final Map<String, ChartData> pairs;
+        private final String versionKey;
+        private CrossRates grid;
+
+        private Conversion(String from, String to, Map<String, ChartData> pairs) {
+            this.from = from;
+            this.to = to;
+            this.pairs = pairs;
+            StringBuilder sb = new StringBuilder();
+            for (ChartData fx : pairs.values()) {
+                String v = fx.versionKey();
+                if (v == null) {
+                    sb = null;
+                    break;
+                }
+                sb.append(v).append(';');
+            }
+            this.versionKey = sb == null ? null : sb.toString();
+        }
+
+        /** The stored versions of the forex series read, for cache keys; {@code null} if one is unknown. */
+        public String versionKey() {
+            return versionKey;
+        }
+
+        /**
+         * {@code prices[0..n)} on {@link DayIndex days} {@code days[0..n)} converted; NaN where a needed rate is
+         * missing or the currency is unsupported.
+         */
+        double[] convert(int[] days, double[] prices, int n) {
+            double[] out = new double[n];
+            System.arraycopy(prices, 0, out, 0, n);
+            if (from.equals(to)) return out;
+            CrossRates g = grid();
+            for (int i = 0; i < n; i++) out[i] *= g.at(days[i]);
+            return out;
+        }
+
+        /** As {@link FxService#convert(ChartData, String)}, for a series in this conversion's source currency. */
+        ChartData convert(ChartData data) {
+            if (from.equals(to)) return data;
+            CrossRates g = grid();
+            ChartData out = new ChartData();
+            out.copyMetaFrom(data);
+            out.setCurrency(to);
+            long version = data.getVersion();
+            for (ChartData fx : pairs.values()) version = Math.max(version, fx.getVersion());
+            out.setVersion(data.getVersion() == 0 ? 0 : version);
+            List<Long> ts = data.getTimestamps();
+            int[] days = DayIndex.days(data);
+            for (int i = 0; i < ts.size(); i++) {
+                double r = g.at(days[i]);
+                out.addRow(ts.get(i), data.getOpen().get(i) * r, data.getHigh().get(i) * r,
+                        data.getLow().get(i) * r, data.getClose().get(i) * r, data.getAdjClose().get(i) * r,
+                        data.getVolume().get(i), data.getDividends().get(i) * r);
+            }
+            return out;
+        }
+
+        private CrossRates grid() {
+            if (grid == null) {
+                grid = grids.get(versionKey == null ? null : from + "|" + to + "|" + versionKey,
+                        k -> buildCrossRates(from, to, pairs));
+            }
+            return grid;
+        }
+    }
+
+    /** Yahoo symbols of the forex series a {@code from -> to} conversion reads. */
+    public List<String> pairSymbols(String from, String to) {
+        if (from.equals(to)) return List.of();
+        return pairsFor(from, to).stream().map(PAIRS::get).toList();
+    }
+
+    /** Whether {@code seriesKey} is the stored key of one of the forex pairs. */
+    static boolean isPairKey(String seriesKey) {
+        for (String symbol : PAIRS.values()) {
+            if (CsvCacheService.seriesKey(symbol, BarInterval.DAILY).equals(seriesKey)) return true;
+        }
+        return false;
+    }
+
+    @EventListener
+    public void onSeriesUpdated(SeriesUpdatedEvent event) {
+        grids.removeIf(g -> g.sources().contains(event.key()));
+    }
+
+    private static CrossRates buildCrossRates(String from, String to, Map<String, ChartData> pairData) {
+        Map<String, DayRates> pairs = new HashMap<>();
+        int first = Integer.MAX_VALUE, last = Integer.MIN_VALUE;
+        Set<String> sources = new HashSet<>();
+        for (Map.Entry<String, ChartData> e : pairData.entrySet()) {
+            String pair = e.getKey();
+            DayRates r = DayRates.of(e.getValue());
+            pairs.put(pair, r);
+            sources.add(CsvCacheService.seriesKey(PAIRS.get(pair), BarInterval.DAILY));
+            if (r == null) continue;
+            first = Math.min(first, r.firstDay);
+            last = Math.max(last, r.firstDay + r.rates.length - 1);
+        }
+        if (first > last) first = last = 0;
+        int days = last - first + 1;
+        double[] toUsd = usdPer(from, pairs, first, days);
+        double[] fromUsd = usdPer(to, pairs, first, days);
+        for (int d = 0; d < days; d++) toUsd[d] /= fromUsd[d];
+        return new CrossRates(first, toUsd, sources);
+    }
+
+    /** USD value of one unit of {@code currency} on each of {@code days} days from {@code firstDay}. */
+    private static double[] usdPer(String currency, Map<String, DayRates> pairs, int firstDay, int days) {
+        double[] out = new double[days];
+        switch (currency) {
+            case "USD" -> Arrays.fill(out, 1.0);
+            case "EUR" -> fill(pairs.get("EURUSD"), firstDay, out, false);
+            case "GBP" -> fill(pairs.get("GBPUSD"), firstDay, out, false);
+            case "SEK" -> fill(pairs.get("USDSEK"), firstDay, out, true);
+            case "JPY" -> fill(pairs.get("USDJPY"), firstDay, out, true);
+            case "CNY" -> fill(pairs.get("USDCNY"), firstDay, out, true);
+            case "XDR" -> {
+                for (Map.Entry<String, Double> e : XDR_BASKET.entrySet()) {
+                    double[] usd = usdPer(e.getKey(), pairs, firstDay, days);
+                    for (int d = 0; d < days; d++) out[d] += e.getValue() * usd[d];
+                }
+            }
+            default -> Arrays.fill(out, Double.NaN);
+        }
+        return out;
+    }
+
+    /** {@code pair}'s rate (inverted if {@code invert}) on each day of {@code out} from {@code firstDay}. */
+    private static void fill(DayRates pair, int firstDay, double[] out, boolean invert) {
+        if (pair == null) {
+            Arrays.fill(out, Double.NaN);
+            return;
+        }
+        for (int d = 0; d < out.length; d++) {
+            double r = pair.at(firstDay + d);
+            out[d] = invert ? 1 / r : r;
+        }
+    }
+
+    /** One pair's last rate per day, forward-filled; {@code null} without any usable rate. */
+    private record DayRates(int firstDay, double[] rates) {
+        static DayRates of(ChartData fx) {
+            List<Double> close = fx.getAdjClose();
+            int[] days = DayIndex.days(fx);
+            int first = 0;
+            while (first < days.length && !usable(close.get(first))) first++;
+            if (first == days.length) return null;
+            int firstDay = days[first];
+            int[] grid = new int[days[days.length - 1] - firstDay + 1];
+            for (int d = 0; d < grid.length; d++) grid[d] = firstDay + d;
+            // Usable rows only, so a day whose last bar has no rate falls back to the previous one.
+            int[] rows = new int[days.length];
+            int[] rowDays = new int[days.length];
+            int n = 0;
+            for (int i = first; i < days.length; i++) {
+                if (!usable(close.get(i))) continue;
+                rows[n] = i;
+                rowDays[n++] = days[i];
+            }
+            int[] match = DayIndex.match(rowDays, n, grid, DayIndex.Fill.PREVIOUS, Integer.MAX_VALUE);
+            double[] rates = new double[grid.length];
+            for (int d = 0; d < grid.length; d++) rates[d] = close.get(rows[match[d]]);
+            return new DayRates(firstDay, rates);
+        }
+
+        double at(int day) {
+            return rates[Math.max(0, Math.min(rates.length - 1, day - firstDay))];
+        }
+
+        private static boolean usable(double r) {
+            return !Double.isNaN(r) && r != 0;
+        }
+    }
+
+    private ChartData pairData(String pair) {
+        return cacheService.getChartData(PAIRS.get(pair), CsvCacheService.MAX_RANGE, "1d");
+    }
+
+    private static String currencyOf(ChartData data) {
+        return data.getCurrency() != null ? data.getCurrency() : "USD";
+    }
+
+    private static TreeSet<String> pairsFor(String from, String to) {
+        TreeSet<String> pairs = new TreeSet<>();
+        for (String c : new String[]{from, to}) {
+            switch (c) {
+                case "EUR" -> pairs.add("EURUSD");
+                case "GBP" -> pairs.add("GBPUSD");
+                case "SEK" -> pairs.add("USDSEK");
+                case "JPY" -> pairs.add("USDJPY");
+                case "CNY" -> pairs.add("USDCNY");
+                case "XDR" -> pairs.addAll(List.of("EURUSD", "GBPUSD", "USDJPY", "USDCNY"));
+                default -> { }
+            }
+        }
+        return pairs;
+    }
+
+    private static Map<String, Double> basket() {
+        Map<String, Double> b = new LinkedHashMap<>();
+        b.put("USD", 0.38671);
+        b.put("EUR", 0.57813);
+        b.put("CNY", 1.0993);
+        b.put("JPY", 13.452);
+        b.put("GBP", 0.080870);
+        return b;
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
 @Service
 public class GitCacheService {
@@ -36,15 +37,33 @@ public class GitCacheService {
                 git = Git.init().setDirectory(cacheDir.toFile()).call();
                 log.info("Initialized new git repo at {}", cacheDir);
             }
+            ignoreScratch();
         } catch (IOException | GitAPIException e) {
             log.error("Failed to initialize git cache repo: {}", e.getMessage());
         }
     }
 
+    /**
+     * Keep churn out of history: intraday bars are a short rolling window Yahoo can always re-serve, the
+     * warm-up index ({@link CacheWarmupService}) is rebuilt on every start, and metric views
+     * ({@link MetricViewService}) are derived from the series.
+     */
+    private void ignoreScratch() throws IOException {
+        Path gitignore = cacheDir.resolve(".gitignore");
+        for (String entry : List.of("intraday/", "index.csv", "aggregates/")) {
+            String current = Files.exists(gitignore) ? Files.readString(gitignore) : "";
+            if (current.lines().noneMatch(entry::equals)) {
+                Files.writeString(gitignore, current + (current.isEmpty() || current.endsWith("\n") ? "" : "\n") + entry + "\n");
+            }
+        }
+    }
+
     public synchronized void commitChanges(String message) {
         if (git == null) return;
         try {
             git.add().addFilepattern(".").call();
+            // Stage deletions too (superseded cache segments, migrated legacy files).
+            git.add().setUpdate(true).addFilepattern(".").call();
             var status = git.status().call();
             if (status.getChanged().isEmpty() && status.getAdded().isEmpty() && status.getRemoved().isEmpty()) {
                 log.debug("No changes to commit");
@@ -0,0 +1,194 @@
+package org.example.indexcurrency.service;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Bit-level column codecs from Facebook's Gorilla paper, used by {@link CompressedSeries}:
+ *
+ * <ul>
+ *   <li>{@link #encodeLongs} &mdash; delta-of-delta: the first value and first delta raw, then each change in
+ *       delta in a prefix-coded bucket ({@code 0} for "same step as before"). Daily timestamps cost one bit per
+ *       regular weekday step and ~25 bits around weekends and DST shifts.</li>
+ *   <li>{@link #encodeDoubles} &mdash; XOR with the previous value: {@code 0} for a repeat, otherwise only the
+ *       meaningful bits between the leading and trailing zeros, reusing the previous window when they fit.</li>
+ * </ul>
+ *
+ * Encoders return plain words; decoders read from a {@link LongBuffer} so the words can live off-heap.
+ */
+final class GorillaCodec {
+
+    // Delta-of-delta buckets: prefix of i ones then a zero selects BUCKET_BITS[i]; all ones means raw 64 bits.
+    private static final int[] BUCKET_BITS = {7, 9, 12, 20};
+
+    private GorillaCodec() {}
+
+    static long[] encodeLongs(long[] values, int n) {
+        BitWriter w = new BitWriter(n);
+        if (n == 0) return w.toArray();
+        w.write(values[0], 64);
+        if (n == 1) return w.toArray();
+        long prevDelta = values[1] - values[0];
+        w.write(prevDelta, 64);
+        for (int i = 2; i < n; i++) {
+            long delta = values[i] - values[i - 1];
+            long dod = delta - prevDelta;
+            prevDelta = delta;
+            if (dod == 0) {
+                w.write(0, 1);
+                continue;
+            }
+            int b = 0;
+            while (b < BUCKET_BITS.length && !fits(dod, BUCKET_BITS[b])) b++;
+            // b+1 ones, then a terminating zero unless this is the raw escape.
+            w.write(-1L, b + 1);
+            if (b < BUCKET_BITS.length) {
+                w.write(0, 1);
+                w.write(dod, BUCKET_BITS[b]);
+            } else {
+                w.write(dod, 64);
+            }
+        }
+        return w.toArray();
+    }
+
+    static void decodeLongs(LongBuffer bits, int n, long[] out) {
+        if (n == 0) return;
+        BitReader r = new BitReader(bits);
+        out[0] = r.read(64);
+        if (n == 1) return;
+        long delta = r.read(64);
+        out[1] = out[0] + delta;
+        for (int i = 2; i < n; i++) {
+            if (r.readBit() != 0) {
+                int b = 0;
+                while (b < BUCKET_BITS.length && r.readBit() != 0) b++;
+                delta += b < BUCKET_BITS.length ? r.readSigned(BUCKET_BITS[b]) : r.read(64);
+            }
+            out[i] = out[i - 1] + delta;
+        }
+    }
+
+    static long[] encodeDoubles(double[] values, int n) {
+        BitWriter w = new BitWriter(n);
+        if (n == 0) return w.toArray();
+        long prev = Double.doubleToRawLongBits(values[0]);
+        w.write(prev, 64);
+        int prevLead = -1, prevTrail = 0;
+        for (int i = 1; i < n; i++) {
+            long cur = Double.doubleToRawLongBits(values[i]);
+            long xor = cur ^ prev;
+            prev = cur;
+            if (xor == 0) {
+                w.write(0, 1);
+                continue;
+            }
+            w.write(1, 1);
+            int lead = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trail = Long.numberOfTrailingZeros(xor);
+            if (prevLead >= 0 && lead >= prevLead && trail >= prevTrail) {
+                w.write(0, 1);
+                w.write(xor >>> prevTrail, 64 - prevLead - prevTrail);
+            } else {
+                int len = 64 - lead - trail;
+                w.write(1, 1);
+                w.write(lead, 5);
+                w.write(len & 63, 6); // 64 meaningful bits is stored as 0
+                w.write(xor >>> trail, len);
+                prevLead = lead;
+                prevTrail = trail;
+            }
+        }
+        return w.toArray();
+    }
+
+    static void decodeDoubles(LongBuffer bits, int n, double[] out) {
+        if (n == 0) return;
+        BitReader r = new BitReader(bits);
+        long prev = r.read(64);
+        out[0] = Double.longBitsToDouble(prev);
+        int lead = 0, trail = 0;
+        for (int i = 1; i < n; i++) {
+            if (r.readBit() != 0) {
+                if (r.readBit() != 0) {
+                    lead = (int) r.read(5);
+                    int len = (int) r.read(6);
+                    if (len == 0) len = 64;
+                    trail = 64 - lead - len;
+                }
+                prev ^= r.read(64 - lead - trail) << trail;
+            }
+            out[i] = Double.longBitsToDouble(prev);
+        }
+    }
+
+    private static boolean fits(long v, int bits) {
+        long min = -(1L << (bits - 1)), max = (1L << (bits - 1)) - 1;
+        return v >= min && v <= max;
+    }
+
+    /** Append-only bit buffer, most significant bit first. */
+    static final class BitWriter {
+        private long[] words;
+        private int bit;
+
+        BitWriter(int expectedValues) {
+            words = new long[Math.max(2, expectedValues / 16 + 2)];
+        }
+
+        /** Write the low {@code n} bits of {@code value}, {@code 1 <= n <= 64}. */
+        void write(long value, int n) {
+            if (n < 64) value &= (1L << n) - 1;
+            int word = bit >>> 6, used = bit & 63;
+            if (word + 1 >= words.length) words = Arrays.copyOf(words, words.length * 2);
+            int free = 64 - used;
+            if (n <= free) {
+                words[word] |= value << (free - n);
+            } else {
+                words[word] |= value >>> (n - free);
+                words[word + 1] |= value << (64 - (n - free));
+            }
+            bit += n;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(words, (bit + 63) >>> 6);
+        }
+    }
+
+    /** Sequential reader over a {@link BitWriter}'s output. */
+    static final class BitReader {
+        private final LongBuffer words;
+        private int bit;
+
+        BitReader(LongBuffer words) {
+            this.words = words;
+        }
+
+        long readBit() {
+            long v = (words.get(bit >>> 6) >>> (63 - (bit & 63))) & 1L;
+            bit++;
+            return v;
+        }
+
+        /** Read {@code n} bits as an unsigned value, {@code 1 <= n <= 64}. */
+        long read(int n) {
+            int word = bit >>> 6, used = bit & 63;
+            int free = 64 - used;
+            long v;
+            if (n <= free) {
+                v = words.get(word) << used >>> (64 - n);
+            } else {
+                long hi = words.get(word) << used >>> used;
+                v = (hi << (n - free)) | (words.get(word + 1) >>> (64 - (n - free)));
+            }
+            bit += n;
+            return v;
+        }
+
+        long readSigned(int n) {
+            long v = read(n);
+            return v << (64 - n) >> (64 - n);
+        }
+    }
+}
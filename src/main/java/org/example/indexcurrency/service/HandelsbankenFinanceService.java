@@ -77,6 +77,11 @@ public class HandelsbankenFinanceService {
         return fetch(isin, start, LocalDate.now(ZoneOffset.UTC));
     }
 
+    /** Daily NAV between two dates (inclusive), e.g. to re-fetch a hole in a cached series. */
+    public ChartData fetchRange(String isin, LocalDate start, LocalDate end) {
+        return fetch(isin, start, end);
+    }
+
     @SuppressWarnings("unchecked")
     private ChartData fetch(String isin, LocalDate start, LocalDate end) {
         String url = UriComponentsBuilder.fromUriString(TIME_SERIES_URL)
@@ -167,6 +172,8 @@ public class HandelsbankenFinanceService {
 
     private static long rangeToDays(String range) {
         if (range == null || range.isEmpty()) return 10 * 365L;
+        // "max": reach back further than the source has data; windows before the first row come back empty.
+        if ("max".equals(range)) return 50 * 365L;
         char unit = range.charAt(range.length() - 1);
         int value;
         try {
@@ -159,6 +159,11 @@ public class InvestingFinanceService {
         return fetchHistorical(symbol, inst, start);
     }
 
+    /** Daily history between two dates (inclusive), e.g. to re-fetch a hole in a cached series. */
+    public ChartData fetchRange(String symbol, LocalDate start, LocalDate end) {
+        return fetchHistorical(symbol, resolveInstrument(symbol), start, end);
+    }
+
     /**
      * Best-effort dividend history (ex-date&rarr;amount) from investing.com. Used only as a backup to fill
      * the pre-Yahoo tail when investing.com's price history reaches further back than Yahoo's. The
@@ -318,8 +323,11 @@ public class InvestingFinanceService {
     // ── historical data ──
 
     private ChartData fetchHistorical(String symbol, Instrument inst, LocalDate start) {
+        return fetchHistorical(symbol, inst, start, LocalDate.now(ZoneOffset.UTC));
+    }
+
+    private ChartData fetchHistorical(String symbol, Instrument inst, LocalDate start, LocalDate end) {
         long pairId = inst.pairId();
-        LocalDate end = LocalDate.now(ZoneOffset.UTC);
 
         // investing.com caps each historical response at ~5000 rows and, for an over-wide window,
         // returns the OLDEST rows — truncating recent data. Fetch in sub-windows comfortably under
@@ -417,6 +425,8 @@ public class InvestingFinanceService {
 
     private static long rangeToDays(String range) {
         if (range == null || range.isEmpty()) return 5 * 365L;
+        // "max": reach back further than the source has data; windows before the first row come back empty.
+        if ("max".equals(range)) return 50 * 365L;
         char unit = range.charAt(range.length() - 1);
         int value;
         try {
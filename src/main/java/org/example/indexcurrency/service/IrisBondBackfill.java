@@ -118,11 +118,36 @@ public class IrisBondBackfill {
 
     /** Punktvis b - g pa gemensamma datum (t.ex. covered-spread = bostad - stat). */
     static TreeMap<LocalDate, Double> minus(TreeMap<LocalDate, Double> b, TreeMap<LocalDate, Double> g) {
+        List<LocalDate> keys = new ArrayList<>();
+        double[][] v = innerJoin(keys, b, g);
         TreeMap<LocalDate, Double> out = new TreeMap<>();
-        for (var e : b.entrySet()) {
-            Double gv = g.get(e.getKey());
-            if (gv != null) out.put(e.getKey(), e.getValue() - gv);
+        for (int i = 0; i < keys.size(); i++) out.put(keys.get(i), v[0][i] - v[1][i]);
+        return out;
+    }
+
+    /**
+     * Inner join pa gemensamma datum: seriernas datum blir dagnummer (DayIndex) och matchas med en linjar
+     * merge i stallet for containsKey/get per serie och datum. Fyller keys med de gemensamma datumen och
+     * returnerar varje series varden pa dem.
+     */
+    @SafeVarargs
+    static double[][] innerJoin(List<LocalDate> keys, TreeMap<LocalDate, Double>... series) {
+        int[][] days = new int[series.length][];
+        double[][] values = new double[series.length][];
+        for (int s = 0; s < series.length; s++) {
+            days[s] = new int[series[s].size()];
+            values[s] = new double[series[s].size()];
+            int i = 0;
+            for (var e : series[s].entrySet()) {       // sorterad -> stigande dagnummer
+                days[s][i] = DayIndex.of(e.getKey());
+                values[s][i++] = e.getValue();
+            }
         }
+        DayIndex.Join join = DayIndex.join(days);
+        for (int day : join.days()) keys.add(DayIndex.date(day));
+        double[][] out = new double[series.length][join.size()];
+        for (int s = 0; s < series.length; s++)
+            for (int i = 0; i < join.size(); i++) out[s][i] = values[s][join.rows()[s][i]];
         return out;
     }
 
@@ -138,25 +163,12 @@ public class IrisBondBackfill {
                              TreeMap<LocalDate, Double> g10,
                              TreeMap<LocalDate, Double> g5,
                              TreeMap<LocalDate, Double> spread) {
-        TreeMap<LocalDate, Double> navW = toWeekly(nav);
-        TreeMap<LocalDate, Double> g10W = toWeekly(g10);
-        TreeMap<LocalDate, Double> g5W  = toWeekly(g5);
-        TreeMap<LocalDate, Double> spW  = toWeekly(spread);
-
         // inner join pa gemensamma veckodatum
         List<LocalDate> keys = new ArrayList<>();
-        for (LocalDate d : navW.keySet())
-            if (g10W.containsKey(d) && g5W.containsKey(d) && spW.containsKey(d)) keys.add(d);
-        java.util.Collections.sort(keys);
+        double[][] v = innerJoin(keys, toWeekly(nav), toWeekly(g10), toWeekly(g5), toWeekly(spread));
 
         int n = keys.size();
-        double[] navv = new double[n], g10v = new double[n], g5v = new double[n], spv = new double[n];
-        for (int i = 0; i < n; i++) {
-            navv[i] = navW.get(keys.get(i));
-            g10v[i] = g10W.get(keys.get(i));
-            g5v[i]  = g5W.get(keys.get(i));
-            spv[i]  = spW.get(keys.get(i));
-        }
+        double[] navv = v[0], g10v = v[1], g5v = v[2], spv = v[3];
 
         // forsta raden tappas (diff/pct_change kraver t-1)
         Panel p = new Panel();
@@ -416,19 +428,18 @@ public class IrisBondBackfill {
     static void backfill(Fit b, TreeMap<LocalDate, Double> histG10,
                          TreeMap<LocalDate, Double> histG5,
                          TreeMap<LocalDate, Double> histSpread) {
-        TreeMap<LocalDate, Double> sw = toWeekly(histG10), g5w = toWeekly(histG5), sp = toWeekly(histSpread);
         List<LocalDate> keys = new ArrayList<>();
-        for (LocalDate d : sw.keySet()) if (g5w.containsKey(d) && sp.containsKey(d)) keys.add(d);
-        java.util.Collections.sort(keys);
+        double[][] v = innerJoin(keys, toWeekly(histG10), toWeekly(histG5), toWeekly(histSpread));
+        double[] sw = v[0], g5w = v[1], sp = v[2];
 
         double idx = 100.0;
         List<String> pretty = new ArrayList<>();
         List<String> csv = new ArrayList<>();
         csv.add("date,index");
         for (int i = 1; i < keys.size(); i++) {
-            double s0 = sw.get(keys.get(i-1)), s1 = sw.get(keys.get(i));
-            double f0 = g5w.get(keys.get(i-1)), f1 = g5w.get(keys.get(i));
-            double p0 = sp.get(keys.get(i-1)), p1 = sp.get(keys.get(i));
+            double s0 = sw[i-1], s1 = sw[i];
+            double f0 = g5w[i-1], f1 = g5w[i];
+            double p0 = sp[i-1], p1 = sp[i];
             double dg10 = (s1 - s0) / 100.0, dg5 = (f1 - f0) / 100.0, dspr = (p1 - p0) / 100.0;
             double carry = (s0 + p0) / 100.0 / 52.0, conv = 0.5 * dg10 * dg10;
             double rhat = rHat(b, dg5, dg10, dspr, carry, conv, 1.0) - SIM_COST_ANNUAL / 52.0;
@@ -458,8 +469,7 @@ public class IrisBondBackfill {
     static void writeAppProxy(Fit b, TreeMap<LocalDate, Double> g10,
                               TreeMap<LocalDate, Double> g5, TreeMap<LocalDate, Double> spread) {
         List<LocalDate> keys = new ArrayList<>();
-        for (LocalDate d : g10.keySet()) if (g5.containsKey(d) && spread.containsKey(d)) keys.add(d);
-        java.util.Collections.sort(keys);
+        double[][] v = innerJoin(keys, g10, g5, spread);
         if (keys.size() < 2) { System.out.println("Proxy: for lite faktordata"); return; }
 
         double idx = 100.0;
@@ -473,9 +483,9 @@ public class IrisBondBackfill {
         rows.add("date,open,high,low,close,adjclose,volume,dividend");
         rows.add(proxyRow(keys.get(0), idx));
         for (int i = 1; i < keys.size(); i++) {
-            double s0 = g10.get(keys.get(i-1)), s1 = g10.get(keys.get(i));
-            double f0 = g5.get(keys.get(i-1)), f1 = g5.get(keys.get(i));
-            double p0 = spread.get(keys.get(i-1)), p1 = spread.get(keys.get(i));
+            double s0 = v[0][i-1], s1 = v[0][i];
+            double f0 = v[1][i-1], f1 = v[1][i];
+            double p0 = v[2][i-1], p1 = v[2][i];
             double dg10 = (s1 - s0) / 100.0, dg5 = (f1 - f0) / 100.0, dspr = (p1 - p0) / 100.0;
             double carry = (s0 + p0) / 100.0 / 252.0, conv = 0.5 * dg10 * dg10;
             double rhat = rHat(b, dg5, dg10, dspr, carry, conv, 52.0 / 252.0)    // daglig: skala interceptet
@@ -0,0 +1,49 @@
+package org.example.indexcurrency.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Small synchronized least-recently-used map for derived results (downsampled or resampled series, ...). Keys
+ * embed the source series' version, so entries never need explicit invalidation; stale ones just age out, or
+ * can be dropped early with {@link #removeIf}.
+ */
+final class LruCache<K, V> {
+
+    private final Map<K, V> map;
+
+    LruCache(int maxEntries) {
+        this.map = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Cached value for {@code key}, computing it outside the lock on a miss. A {@code null} key bypasses the
+     * cache (e.g. an unversioned series).
+     */
+    V get(K key, Function<K, V> compute) {
+        if (key == null) return compute.apply(null);
+        synchronized (map) {
+            V hit = map.get(key);
+            if (hit != null) return hit;
+        }
+        V value = compute.apply(key);
+        synchronized (map) {
+            map.put(key, value);
+        }
+        return value;
+    }
+
+    /** Drop the entries whose value matches {@code stale}. */
+    void removeIf(Predicate<V> stale) {
+        synchronized (map) {
+            map.values().removeIf(v -> v != null && stale.test(v));
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.BarInterval;
+import org.example.indexcurrency.model.ChartData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Full-history metrics and calendar-year returns of a cached daily series in its own currency, maintained
+ * incrementally: each view is a {@link ReturnAggregate} plus the last year-end values, persisted as
+ * {@code aggregates/<key>.csv} next to the series cache, so a refresh that appends a bar folds in only the new bars
+ * instead of recomputing the whole history. Only views against the currency's default risk-free rate are kept
+ * that way; a view for any other rate is computed from scratch (and memoized in memory only).
+ *
+ * <p>The last {@value #TAIL} bars are kept out of the persisted (settled) state and re-folded on every read, since
+ * refreshes rewrite them (Yahoo's overlap re-fetch, a live bar replaced by the close). A settled state is reused
+ * only while the series still holds its first and last settled bars at the same rows and their adjClose differs
+ * by one common factor (a dividend re-basing, which leaves every return unchanged); otherwise, e.g. after a gap
+ * repair shifted the rows or a full re-fetch, the view is rebuilt from scratch. Interior prices revised in place
+ * are not detected (only the two anchor bars are checked, to keep a read O(1)).
+ */
+@Service
+public class MetricViewService {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricViewService.class);
+    static final int TAIL = 5;
+    // Two adjClose ratios this close are the same re-basing factor (prices are stored at 6 decimals).
+    private static final double SCALE_TOLERANCE = 1e-6;
+    // A year-end bar must fall within this of Dec 31, as in the frontend's quilt.
+    private static final long YEAR_END_TOLERANCE_SECONDS = 14 * 86400L;
+
+    /**
+     * A symbol's full-history view: its metrics ({@code null} with fewer than two returns) and the return of each
+     * complete calendar year (UTC), in percent, in {@code currency}.
+     */
+    public record HistoryView(String symbol, String currency, double riskFreeRate, MetricsEngine.Metrics metrics,
+                              Map<Integer, Double> annualReturns) {}
+
+    // Value of the series (as ReturnAggregate growth) at the last bar of a year.
+    private record YearEnd(long ts, double growth) {}
+
+    private final CsvCacheService cacheService;
+    private final Path dir;
+    // Settled views by series key, at the default risk-free rate.
+    private final Map<String, View> settled = new HashMap<>();
+    private final LruCache<String, HistoryView> views = new LruCache<>(1024);
+
+    public MetricViewService(@Value("${cache.dir:cache}") String cacheDir, CsvCacheService cacheService) {
+        this.cacheService = cacheService;
+        this.dir = Path.of(cacheDir).resolve("aggregates");
+    }
+
+    /**
+     * The full-history view of {@code symbol}, measured against {@code riskFreeRate} (annual percent), or when
+     * {@code null} against {@code defaultRate} of the series' currency.
+     */
+    public HistoryView history(String symbol, Double riskFreeRate, Function<String, Double> defaultRate) {
+        ChartData data = cacheService.getChartData(symbol, CsvCacheService.MAX_RANGE, "1d");
+        String currency = data.getCurrency() != null ? data.getCurrency() : "USD";
+        double defaultRf = defaultRate.apply(currency);
+        double rf = riskFreeRate != null ? riskFreeRate : defaultRf;
+        String key = CsvCacheService.seriesKey(symbol, BarInterval.DAILY);
+        String version = data.versionKey();
+        return views.get(version == null ? null : version + "|" + rf, k -> {
+            int settleTo = Math.max(0, data.getTimestamps().size() - TAIL);
+            View view = k == null || rf != defaultRf ? new View(rf).advance(data, settleTo)
+                    : settled(key, rf, data, settleTo);
+            return view.advance(data, data.getTimestamps().size()).toHistory(symbol, currency);
+        });
+    }
+
+    /**
+     * A copy of the settled view of {@code key} at the default rate {@code rf} advanced to row {@code settleTo}:
+     * reused, re-based or rebuilt (also when the default rate changed).
+     */
+    private synchronized View settled(String key, double rf, ChartData data, int settleTo) {
+        Path file = dir.resolve(key + ".csv");
+        View view = settled.get(key);
+        if (view == null) view = read(file);
+        boolean dirty = false;
+        if (view == null || view.returns.riskFreeRate() != rf || view.rows > settleTo || !view.rebase(data)) {
+            if (view != null) log.info("Rebuilding metric view of {} at rf {}", key, rf);
+            view = new View(rf);
+            dirty = true;
+        }
+        if (view.rows < settleTo) {
+            view.advance(data, settleTo);
+            dirty = true;
+        }
+        settled.put(key, view);
+        if (dirty) write(file, view);
+        return view.copy();
+    }
+
+    /**
+     * A series folded up to row {@code rows}: the aggregate of its returns, the first and last rows with a price
+     * (to recognize the series again) and the growth at each year's last bar.
+     */
+    private static final class View {
+        ReturnAggregate returns;
+        int rows;
+        int firstRow = -1, lastRow = -1;
+        long firstTs, lastTs;
+        double firstPrice, lastPrice;
+        TreeMap<Integer, YearEnd> yearEnds = new TreeMap<>();
+
+        View(double riskFreeRate) {
+            returns = new ReturnAggregate(riskFreeRate);
+        }
+
+        /** Fold rows {@code [rows, to)} in; NaN prices are skipped, a return after a zero price is 0. */
+        View advance(ChartData data, int to) {
+            List<Long> ts = data.getTimestamps();
+            List<Double> adj = data.getAdjClose();
+            for (int i = rows; i < to; i++) {
+                double p = adj.get(i);
+                if (Double.isNaN(p)) continue;
+                long t = ts.get(i);
+                if (firstRow < 0) {
+                    firstRow = i;
+                    firstTs = t;
+                    firstPrice = p;
+                } else {
+                    returns.add(lastPrice == 0 ? 0 : (p - lastPrice) / lastPrice);
+                }
+                lastRow = i;
+                lastTs = t;
+                lastPrice = p;
+                yearEnds.put(LocalDate.ofEpochDay(Math.floorDiv(t, 86400L)).getYear(),
+                        new YearEnd(t, returns.growth()));
+            }
+            rows = Math.max(rows, to);
+            return this;
+        }
+
+        /**
+         * Whether {@code data} still starts with the rows folded in, up to a uniform adjClose re-basing (then
+         * applied to the stored prices).
+         */
+        boolean rebase(ChartData data) {
+            if (firstRow < 0) return rows <= data.getTimestamps().size();
+            List<Long> ts = data.getTimestamps();
+            List<Double> adj = data.getAdjClose();
+            if (lastRow >= ts.size() || ts.get(firstRow) != firstTs || ts.get(lastRow) != lastTs) return false;
+            if (firstPrice == 0 || lastPrice == 0) {
+                return adj.get(firstRow) == firstPrice && adj.get(lastRow) == lastPrice;
+            }
+            double first = adj.get(firstRow) / firstPrice, last = adj.get(lastRow) / lastPrice;
+            if (!(Math.abs(first / last - 1) <= SCALE_TOLERANCE)) return false;
+            firstPrice = adj.get(firstRow);
+            lastPrice = adj.get(lastRow);
+            return true;
+        }
+
+        View copy() {
+            View c = new View(returns.riskFreeRate());
+            c.returns = returns.copy();
+            c.rows = rows;
+            c.firstRow = firstRow;
+            c.lastRow = lastRow;
+            c.firstTs = firstTs;
+            c.lastTs = lastTs;
+            c.firstPrice = firstPrice;
+            c.lastPrice = lastPrice;
+            c.yearEnds = new TreeMap<>(yearEnds);
+            return c;
+        }
+
+        /** Metrics and complete calendar years, as the frontend's quilt picks them. */
+        HistoryView toHistory(String symbol, String currency) {
+            Map<Integer, Double> annual = new LinkedHashMap<>();
+            for (Map.Entry<Integer, YearEnd> e : yearEnds.entrySet()) {
+                int year = e.getKey();
+                YearEnd end = e.getValue(), base = yearEnds.get(year - 1);
+                if (!closes(year, end) || base == null || !closes(year - 1, base) || base.growth() == 0) continue;
+                annual.put(year, (end.growth() / base.growth() - 1) * 100);
+            }
+            MetricsEngine.Metrics metrics = returns.count() < 2 ? null : returns.metrics(firstTs, lastTs);
+            return new HistoryView(symbol, currency, returns.riskFreeRate(), metrics, annual);
+        }
+
+        private static boolean closes(int year, YearEnd end) {
+            return end.ts() >= LocalDate.of(year + 1, 1, 1).toEpochDay() * 86400L - YEAR_END_TOLERANCE_SECONDS;
+        }
+    }
+
+    /**
+     * {@code # name=value} lines for the view's position and aggregate, then {@code year,ts,growth} rows, written
+     * to a temporary file and moved into place.
+     */
+    private static void write(Path file, View view) {
+        StringBuilder sb = new StringBuilder();
+        Map<String, String> state = new LinkedHashMap<>();
+        state.put("rows", Integer.toString(view.rows));
+        state.put("firstRow", Integer.toString(view.firstRow));
+        state.put("firstTs", Long.toString(view.firstTs));
+        state.put("firstPrice", Double.toString(view.firstPrice));
+        state.put("lastRow", Integer.toString(view.lastRow));
+        state.put("lastTs", Long.toString(view.lastTs));
+        state.put("lastPrice", Double.toString(view.lastPrice));
+        state.putAll(view.returns.state());
+        state.forEach((name, value) -> sb.append("# ").append(name).append('=').append(value).append('\n'));
+        sb.append("year,ts,growth\n");
+        view.yearEnds.forEach((year, end) ->
+                sb.append(year).append(',').append(end.ts()).append(',').append(end.growth()).append('\n'));
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write metric view {}: {}", file, e.getMessage());
+        }
+    }
+
+    /** A view written by {@link #write}, or {@code null} if absent or unreadable (it is then rebuilt). */
+    private static View read(Path file) {
+        if (!Files.exists(file)) return null;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, String> state = new HashMap<>();
+            TreeMap<Integer, YearEnd> yearEnds = new TreeMap<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("# ")) {
+                    int eq = line.indexOf('=');
+                    if (eq > 0) state.put(line.substring(2, eq), line.substring(eq + 1));
+                } else if (!line.isEmpty() && Character.isDigit(line.charAt(0))) {
+                    String[] f = line.split(",");
+                    yearEnds.put(Integer.parseInt(f[0]), new YearEnd(Long.parseLong(f[1]), Double.parseDouble(f[2])));
+                }
+            }
+            View view = new View(0);
+            view.returns = ReturnAggregate.fromState(state);
+            view.rows = Integer.parseInt(state.get("rows"));
+            view.firstRow = Integer.parseInt(state.get("firstRow"));
+            view.firstTs = Long.parseLong(state.get("firstTs"));
+            view.firstPrice = Double.parseDouble(state.get("firstPrice"));
+            view.lastRow = Integer.parseInt(state.get("lastRow"));
+            view.lastTs = Long.parseLong(state.get("lastTs"));
+            view.lastPrice = Double.parseDouble(state.get("lastPrice"));
+            view.yearEnds = yearEnds;
+            return view;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unreadable metric view {}, rebuilding: {}", file, e.getMessage());
+            return null;
+        }
+    }
+}
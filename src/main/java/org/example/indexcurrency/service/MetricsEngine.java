@@ -0,0 +1,57 @@
+package org.example.indexcurrency.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Risk/performance metrics of a daily return series, the frontend's {@code perfFromReturns},
+ * {@code volFromReturns}, {@code sharpeFromReturns}, {@code sortinoFromReturns}, {@code kurtosisFromReturns},
+ * {@code ulcerFromReturns} and {@code upiFromReturns} computed together in one pass over a primitive array
+ * (the browser makes a pass, or several, per metric).
+ *
+ * <p>Mean and central moments are accumulated with Welford's updates (extended to the third and fourth moment
+ * for the kurtosis) in a {@link ReturnAggregate}, so no second pass around the mean is needed and the moments
+ * stay accurate on long series.
+ * Results for cached series are memoized by the {@link ReturnMatrixService} key (series and forex versions,
+ * window, currency) and the risk-free rate.
+ */
+@Service
+public class MetricsEngine {
+
+    /**
+     * Metrics over {@code count} daily returns from the bar at {@code from} to the bar at {@code to} (epoch
+     * seconds). Performance, volatility and ulcer are percent. Ratios are {@code null} where the frontend shows
+     * none (no volatility, drawdown or downside); the Sortino ratio is infinite when no return falls below the
+     * risk-free target yet the excess return is positive.
+     */
+    public record Metrics(int count, long from, long to, double performance, Double volatility, Double sharpe,
+                          Double sortino, Double kurtosis, double ulcer, Double upi) {}
+
+    private final ReturnMatrixService returnMatrices;
+    private final LruCache<String, Metrics> cache = new LruCache<>(1024);
+
+    public MetricsEngine(ReturnMatrixService returnMatrices) {
+        this.returnMatrices = returnMatrices;
+    }
+
+    /**
+     * Metrics of {@code symbol}'s daily returns in {@code currency} from {@code cutoff} (epoch seconds) on, with
+     * {@code riskFreeRate} (annual percent) as the Sharpe/Sortino/UPI hurdle; {@code null} when the symbol has no
+     * history covering the window or fewer than two returns.
+     */
+    public Metrics metrics(String symbol, long cutoff, String currency, double riskFreeRate) {
+        ReturnMatrixService.ReturnMatrix matrix = returnMatrices.matrix(List.of(symbol), cutoff, currency);
+        if (matrix == null || matrix.days() < 2) return null;
+        String key = matrix.cacheKey() == null ? null : matrix.cacheKey() + "|" + riskFreeRate;
+        return cache.get(key, k -> compute(matrix.returns()[0], matrix.start(),
+                matrix.timestamps()[matrix.days() - 1], riskFreeRate));
+    }
+
+    /** Metrics of {@code returns} (at least one) spanning {@code from} to {@code to}. */
+    public static Metrics compute(double[] returns, long from, long to, double riskFreeRate) {
+        ReturnAggregate aggregate = new ReturnAggregate(riskFreeRate);
+        for (double r : returns) aggregate.add(r);
+        return aggregate.metrics(from, to);
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.RebalanceFrequency;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Server-side port of the frontend's {@code getPortfolioDailyReturns}: daily returns of a weighted portfolio of
+ * cached series plus cash, converted to one currency, with drifting weights reset at each
+ * {@link RebalanceFrequency} boundary.
+ *
+ * <p>Work is split in two cached steps. {@link ReturnMatrixService} converts and aligns the constituents into one
+ * matrix of daily returns, shared with the optimizer. {@link #simulate} then runs the drift/rebalance loop over
+ * it; it is cheap enough to repeat per weight vector, e.g. for an optimizer.
+ */
+@Service
+public class PortfolioEngine {
+
+    static final double TRADING_DAYS = 252;
+
+    /** Daily portfolio returns; {@code returns[i]} is the return ending on {@code timestamps[i]}. */
+    public record PortfolioReturns(List<String> symbols, double[] weights, double cashRate, String currency,
+                                   String rebalance, long[] timestamps, double[] returns) {}
+
+    private final ReturnMatrixService returnMatrices;
+    private final LruCache<String, PortfolioReturns> returnsCache = new LruCache<>(256);
+
+    public PortfolioEngine(ReturnMatrixService returnMatrices) {
+        this.returnMatrices = returnMatrices;
+    }
+
+    /**
+     * Portfolio returns from {@code cutoff} (epoch seconds) to the latest common bar. {@code weights} are percent
+     * per symbol; the remainder to 100 is cash earning {@code cashRate} percent a year (1/252 per bar). Returns
+     * {@code null} when a constituent is missing or starts too late, as the frontend does.
+     */
+    public PortfolioReturns dailyReturns(List<String> symbols, double[] weights, double cashRate, long cutoff,
+                                         String currency, RebalanceFrequency rebalance) {
+        if (weights.length != symbols.size()) {
+            throw new IllegalArgumentException("Expected one weight per symbol");
+        }
+        ReturnMatrixService.ReturnMatrix matrix = returnMatrices.matrix(symbols, cutoff, currency);
+        if (matrix == null) return null;
+        String key = matrix.cacheKey() == null ? null : matrix.cacheKey() + "|" + Arrays.toString(weights) + "|"
+                + cashRate + "|" + rebalance.code();
+        return returnsCache.get(key, k -> {
+            double[] returns = simulate(matrix, weights, cashRate, rebalance);
+            return new PortfolioReturns(symbols, weights.clone(), cashRate, currency, rebalance.code(),
+                    matrix.timestamps(), returns);
+        });
+    }
+
+    /**
+     * The frontend's drift/rebalance loop: portfolio returns for each day of {@code matrix}, starting from the
+     * target weights and resetting to them whenever {@code rebalance} crosses a boundary (from the second day).
+     */
+    public static double[] simulate(ReturnMatrixService.ReturnMatrix matrix, double[] weights, double cashRate,
+                                    RebalanceFrequency rebalance) {
+        int count = matrix.assets();
+        double[] stepReturns = stepReturns(matrix);
+        boolean[] resets = rebalanceSteps(matrix.timestamps(), rebalance);
+        double[] target = new double[count];
+        double targetCash = 100;
+        for (int s = 0; s < count; s++) {
+            target[s] = weights[s] / 100;
+            targetCash -= weights[s];
+        }
+        targetCash /= 100;
+        double dailyCash = cashRate / 100 / TRADING_DAYS;
+
+        double[] current = target.clone();
+        double cash = targetCash;
+        double[] growth = new double[count];
+        double[] returns = new double[resets.length];
+        for (int i = 0; i < returns.length; i++) {
+            if (resets[i]) {
+                System.arraycopy(target, 0, current, 0, count);
+                cash = targetCash;
+            }
+            double day = 0;
+            for (int s = 0, at = i * count; s < count; s++, at++) {
+                day += current[s] * stepReturns[at];
+                growth[s] = current[s] * (1 + stepReturns[at]);
+            }
+            returns[i] = day + cash * dailyCash;
+
+            // Drift: each component grows by its return, then renormalize.
+            double cashAfter = cash * (1 + dailyCash);
+            double total = cashAfter;
+            for (int s = 0; s < count; s++) total += growth[s];
+            if (total > 0) {
+                for (int s = 0; s < count; s++) current[s] = growth[s] / total;
+                cash = cashAfter / total;
+            }
+        }
+        return returns;
+    }
+
+    /**
+     * The matrix's returns interleaved day-major, {@code [i * assets + s]} for symbol {@code s} on day {@code i},
+     * so the per-day loops over all constituents read one contiguous run.
+     */
+    static double[] stepReturns(ReturnMatrixService.ReturnMatrix matrix) {
+        double[][] returns = matrix.returns();
+        int count = matrix.assets(), days = matrix.days();
+        double[] out = new double[days * count];
+        for (int s = 0; s < count; s++) {
+            double[] r = returns[s];
+            for (int i = 0; i < days; i++) out[i * count + s] = r[i];
+        }
+        return out;
+    }
+
+    /**
+     * Whether each day (ending on {@code timestamps[i]}) starts by resetting to the target weights; never the
+     * first day.
+     */
+    static boolean[] rebalanceSteps(long[] timestamps, RebalanceFrequency rebalance) {
+        boolean[] out = new boolean[timestamps.length];
+        for (int i = 1; i < out.length; i++) out[i] = rebalance.rebalancesBetween(timestamps[i - 1], timestamps[i]);
+        return out;
+    }
+}
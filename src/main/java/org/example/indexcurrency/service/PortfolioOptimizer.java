@@ -0,0 +1,756 @@
+package org.example.indexcurrency.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.indexcurrency.model.RebalanceFrequency;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Server-side port of the frontend's {@code optimizePortfolio} grid search. A coarse pass tries every weighting
+ * on a 5% grid within the per-symbol and total bounds; a fine pass then tries 1% steps within &plusmn;5% of the
+ * ten best. Candidates are scored like the frontend: each metric (performance, volatility, Sortino, Ulcer
+ * performance index) is min-max normalized over the pass and combined with the objective weights.
+ *
+ * <p>Compared with the browser, the constituents are aligned once ({@link ReturnMatrixService}) and turned
+ * into a day-major return array, every candidate is simulated once with all four metrics accumulated in the same
+ * loop, branches whose partial weights can no longer meet the total bounds are pruned during enumeration, and
+ * candidates are evaluated on a {@link ForkJoinPool}. Jobs run one at a time in submission order; listeners
+ * receive {@code progress} events while a pass runs, a {@code top} event with the coarse leaders, and a final
+ * {@code result}, {@code failed} or {@code cancelled} event.
+ *
+ * <p>The grid grows as {@code (100/step)^N}, so larger portfolios use {@link ContinuousSolver} instead
+ * ({@link Method#CONTINUOUS}): a mean-variance frontier plus a CMA-ES search, scored the same way. By default
+ * ({@link Method#AUTO}) the grid is used while its passes stay within {@code optimizer.grid-limit} candidates.
+ */
+@Service
+public class PortfolioOptimizer {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioOptimizer.class);
+    private static final double COARSE_STEP = 5;
+    private static final double FINE_STEP = 1;
+    private static final double FINE_RADIUS = 5;
+    private static final int REFINED = 10;
+    private static final double COARSE_SHARE = 0.6;
+    private static final double SEED_SHARE = 0.1;
+    // Pruning tolerance, so rounding in a partial sum never drops a weighting the exact total check would keep.
+    private static final double SLACK = 1e-9;
+    private static final int LEAF_SIZE = 256;
+    private static final int METRICS = 4; // perf, vol, sortino, upi
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+    private static final long RETAIN_MILLIS = 15 * 60_000L;
+
+    /** How candidates are searched; {@code AUTO} picks the grid when it is small enough. */
+    public enum Method {
+        GRID, CONTINUOUS, AUTO;
+
+        public static Method parse(String method) {
+            try {
+                return valueOf(method.trim().toUpperCase(Locale.US));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Unsupported optimization method: " + method);
+            }
+        }
+    }
+
+    /** Relative weights of the four metrics in the score; volatility counts against a candidate. */
+    public record Objective(double perf, double vol, double sortino, double upi) {}
+
+    /**
+     * A validated optimization: weights are percent, {@code lower}/{@code upper} per symbol, the total of the
+     * weights within {@code [totalMin, totalMax]} and the rest held as cash at {@code cashRate}.
+     */
+    public record Spec(List<String> symbols, double[] lower, double[] upper, double totalMin, double totalMax,
+                       double cashRate, long cutoff, String currency, RebalanceFrequency rebalance,
+                       Objective objective, double riskFreeRate, int top, Method method) {
+        public Spec {
+            if (symbols.isEmpty()) throw new IllegalArgumentException("No symbols");
+            if (symbols.stream().distinct().count() != symbols.size()) {
+                throw new IllegalArgumentException("Duplicate symbols");
+            }
+            if (lower.length != symbols.size() || upper.length != symbols.size()) {
+                throw new IllegalArgumentException("Expected bounds for every symbol");
+            }
+            for (int s = 0; s < lower.length; s++) {
+                if (!percentRange(lower[s], upper[s])) {
+                    throw new IllegalArgumentException("Bounds for " + symbols.get(s) + " must lie within [0, 100]");
+                }
+            }
+            if (!percentRange(totalMin, totalMax)) {
+                throw new IllegalArgumentException("totalBounds must lie within [0, 100]");
+            }
+            double sum = objective.perf() + objective.vol() + objective.sortino() + objective.upi();
+            if (sum == 0 || !Double.isFinite(sum)) {
+                throw new IllegalArgumentException("Objective weights must not sum to zero");
+            }
+            if (top < 1 || top > 100) throw new IllegalArgumentException("top must be between 1 and 100");
+        }
+
+        // Finite percentages with min <= max; wider or non-finite bounds would make the grid loop never advance.
+        private static boolean percentRange(double min, double max) {
+            return min >= 0 && max <= 100 && min <= max;
+        }
+    }
+
+    /** One scored weighting. {@code sortino} is capped at the pass's largest finite value (see {@link #score}). */
+    public record Candidate(double[] weights, double perf, double vol, double sortino, double upi, double score) {}
+
+    /**
+     * Job snapshot. {@code state} is {@code queued}, {@code running}, {@code done}, {@code failed} or
+     * {@code cancelled}; {@code method} is the search used ({@code grid} or {@code continuous}, empty until
+     * chosen); {@code progress} runs from 0 to 1 over the whole job; {@code top} is best first.
+     */
+    public record Status(String id, String state, String method, String phase, long done, long total,
+                         double progress, List<String> symbols, List<Candidate> top, String error,
+                         long elapsedMillis) {}
+
+    /** An event for job listeners; {@code data} is a {@link Status}. */
+    public record Event(String name, Status data) {
+        public boolean terminal() {
+            return name.equals("result") || name.equals("failed") || name.equals("cancelled");
+        }
+    }
+
+    private final ReturnMatrixService returnMatrices;
+    private final int maxCandidates;
+    private final int gridLimit;
+    private final int maxPending;
+    private final ForkJoinPool pool;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor();
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public PortfolioOptimizer(ReturnMatrixService returnMatrices,
+                              @Value("${optimizer.max-candidates:2000000}") int maxCandidates,
+                              @Value("${optimizer.grid-limit:250000}") int gridLimit,
+                              @Value("${optimizer.parallelism:0}") int parallelism,
+                              @Value("${optimizer.max-pending:4}") int maxPending) {
+        this.returnMatrices = returnMatrices;
+        this.maxCandidates = maxCandidates;
+        this.gridLimit = Math.min(gridLimit, maxCandidates);
+        this.maxPending = maxPending;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Queue an optimization and return its initial status; follow it with {@link #subscribe}. Throws
+     * {@link TooManyJobs} while {@code optimizer.max-pending} jobs are already queued or running.
+     */
+    public synchronized Status submit(Spec spec) {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(j -> j.finishedAt > 0 && now - j.finishedAt > RETAIN_MILLIS);
+        long pending = jobs.values().stream().filter(j -> j.finishedAt == 0).count();
+        if (pending >= maxPending) throw new TooManyJobs(maxPending);
+        Job job = new Job(UUID.randomUUID().toString(), spec);
+        jobs.put(job.id, job);
+        job.future = coordinator.submit(() -> run(job));
+        log.info("Optimizer job {} queued: symbols={}, currency={}, rebalance={}, method={}", job.id,
+                spec.symbols(), spec.currency(), spec.rebalance().code(), spec.method());
+        return job.status();
+    }
+
+    /** Current status, or {@code null} for an unknown (or expired) job. */
+    public Status status(String id) {
+        Job job = jobs.get(id);
+        return job == null ? null : job.status();
+    }
+
+    /**
+     * Register {@code listener} for the job's events and return its current status, or {@code null} for an
+     * unknown job. A listener that throws is dropped. Events of a job that already ended are not replayed.
+     */
+    public Status subscribe(String id, Consumer<Event> listener) {
+        Job job = jobs.get(id);
+        if (job == null) return null;
+        job.listeners.add(listener);
+        return job.status();
+    }
+
+    public void unsubscribe(String id, Consumer<Event> listener) {
+        Job job = jobs.get(id);
+        if (job != null) job.listeners.remove(listener);
+    }
+
+    /** Stop a queued or running job; returns its status, or {@code null} for an unknown job. */
+    public Status cancel(String id) {
+        Job job = jobs.get(id);
+        if (job == null) return null;
+        job.cancelled = true;
+        Future<?> future = job.future;
+        if (job.state.equals("queued") && future != null && future.cancel(false)) job.finish("cancelled", null);
+        return job.status();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(j -> j.cancelled = true);
+        coordinator.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    private void run(Job job) {
+        Spec spec = job.spec;
+        job.startedAt = System.currentTimeMillis();
+        job.state = "running";
+        try {
+            ReturnMatrixService.ReturnMatrix matrix = returnMatrices.matrix(spec.symbols(), spec.cutoff(),
+                    spec.currency());
+            if (matrix == null) {
+                throw new IllegalArgumentException("Not every symbol has convertible history covering the period");
+            }
+            Problem problem = new Problem(matrix.assets(), matrix.days(), PortfolioEngine.stepReturns(matrix),
+                    PortfolioEngine.rebalanceSteps(matrix.timestamps(), spec.rebalance()), spec.cashRate(),
+                    spec.riskFreeRate());
+
+            boolean finished = switch (spec.method()) {
+                case GRID -> grid(job, problem, maxCandidates);
+                case CONTINUOUS -> continuous(job, problem);
+                case AUTO -> {
+                    try {
+                        yield grid(job, problem, gridLimit);
+                    } catch (TooManyCandidates e) {
+                        yield continuous(job, problem);
+                    }
+                }
+            };
+            if (!finished) {
+                job.finish("cancelled", null);
+                return;
+            }
+            if (job.top.isEmpty()) {
+                throw new IllegalArgumentException("No weighting within the bounds gives a usable portfolio");
+            }
+            job.progress = 1;
+            job.finish("result", null);
+            log.info("Optimizer job {} done in {} ms ({}, {} candidates in the last pass)", job.id,
+                    job.finishedAt - job.startedAt, job.method, job.total);
+        } catch (IllegalArgumentException e) {
+            job.finish("failed", e.getMessage());
+        } catch (Exception e) {
+            log.error("Optimizer job {} failed: {}", job.id, e.getMessage());
+            job.finish("failed", String.valueOf(e.getMessage()));
+        }
+    }
+
+    /** The coarse and fine grid passes; {@code false} if cancelled. */
+    private boolean grid(Job job, Problem problem, int limit) throws InterruptedException, ExecutionException {
+        Spec spec = job.spec;
+        job.method = "grid";
+        Candidates coarse = new Candidates(problem.count, limit, false);
+        new Grid(spec.lower(), spec.upper(), COARSE_STEP, spec.totalMin(), spec.totalMax(), coarse, () -> job.cancelled)
+                .enumerate();
+        double[] coarseMetrics = evaluate(job, "coarse", 0, COARSE_SHARE, problem, coarse);
+        if (coarseMetrics == null) return false;
+        int[] coarseBest = best(score(coarseMetrics, coarse.size, spec.objective()), REFINED);
+        job.top = ranked(coarse, coarseMetrics, spec.objective(), spec.top());
+        if (coarseBest.length == 0) return true;
+        job.publish("top");
+
+        Candidates fine = new Candidates(problem.count, limit, true);
+        for (int c : coarseBest) {
+            double[] base = coarse.weights(c);
+            double[] lo = new double[base.length], hi = new double[base.length];
+            for (int s = 0; s < base.length; s++) {
+                lo[s] = Math.max(spec.lower()[s], base[s] - FINE_RADIUS);
+                hi[s] = Math.min(spec.upper()[s], base[s] + FINE_RADIUS);
+            }
+            new Grid(lo, hi, FINE_STEP, spec.totalMin(), spec.totalMax(), fine, () -> job.cancelled).enumerate();
+        }
+        double[] fineMetrics = evaluate(job, "fine", COARSE_SHARE, 1 - COARSE_SHARE, problem, fine);
+        if (fineMetrics == null) return false;
+        List<Candidate> top = ranked(fine, fineMetrics, spec.objective(), spec.top());
+        if (!top.isEmpty()) job.top = top;
+        return true;
+    }
+
+    /** Frontier seeds, then the CMA-ES search; {@code false} if cancelled. */
+    private boolean continuous(Job job, Problem problem) {
+        Spec spec = job.spec;
+        job.method = "continuous";
+        job.phase = "frontier";
+        job.done.set(0);
+        job.total = 0;
+        job.progress = 0;
+        ContinuousSolver solver = new ContinuousSolver(problem, spec.lower(), spec.upper(), spec.totalMin(),
+                spec.totalMax(), spec.objective(), batch -> {
+                    double[] metrics = new double[batch.size * METRICS];
+                    pool.invoke(new EvaluateTask(job, problem, batch, metrics, 0, batch.size));
+                    return metrics;
+                });
+        solver.seed();
+        if (job.cancelled) return false;
+        job.top = ranked(solver.evaluated(), solver.metrics(), solver.scale(), spec.top());
+        job.progress = SEED_SHARE;
+        job.publish("top");
+
+        job.phase = "search";
+        long[] lastPublished = {System.currentTimeMillis()};
+        solver.search(generation -> {
+            job.progress = SEED_SHARE + (1 - SEED_SHARE) * generation / ContinuousSolver.MAX_GENERATIONS;
+            long now = System.currentTimeMillis();
+            if (now - lastPublished[0] >= PROGRESS_INTERVAL_MILLIS) {
+                lastPublished[0] = now;
+                job.publish("progress");
+            }
+        }, () -> job.cancelled);
+        if (job.cancelled) return false;
+        job.total = solver.evaluated().size;
+        job.top = ranked(solver.evaluated(), solver.metrics(), solver.scale(), spec.top());
+        return true;
+    }
+
+    /**
+     * Evaluate every candidate on the pool, publishing progress while it runs. Returns the metrics
+     * ({@code METRICS} per candidate, NaN where the frontend would get no result), or {@code null} if the job
+     * was cancelled.
+     */
+    private double[] evaluate(Job job, String phase, double progressFrom, double progressShare, Problem problem,
+                              Candidates candidates) throws InterruptedException, ExecutionException {
+        job.phase = phase;
+        job.total = candidates.size;
+        job.done.set(0);
+        double[] metrics = new double[candidates.size * METRICS];
+        ForkJoinTask<Void> task = pool.submit(new EvaluateTask(job, problem, candidates, metrics, 0,
+                candidates.size));
+        while (true) {
+            try {
+                task.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                break;
+            } catch (TimeoutException e) {
+                job.progress = progressFrom + progressShare * job.done.get() / Math.max(1, candidates.size);
+                job.publish("progress");
+            }
+        }
+        if (job.cancelled) return null;
+        job.progress = progressFrom + progressShare;
+        job.publish("progress");
+        return metrics;
+    }
+
+    /** Step returns and rebalance flags of the aligned constituents, shared by every candidate. */
+    record Problem(int count, int steps, double[] stepReturns, boolean[] rebalance, double cashRate,
+                   double riskFreeRate) {}
+
+    /**
+     * Simulate {@code weights[offset..offset+count)} like {@link PortfolioEngine#simulate} and accumulate the
+     * frontend's {@code calcPortfolioPerformance}, {@code calcPortfolioVolatility},
+     * {@code calcPortfolioSortino} and {@code calcPortfolioUPI} in the same loop, writing them to
+     * {@code out[at..at+4)}. A missing Sortino or UPI counts as 0, as in the frontend; a candidate without
+     * performance or volatility (fewer than two returns) gets NaN. {@code current} and {@code growth} are
+     * scratch arrays of {@code count} elements.
+     */
+    static void evaluate(Problem p, double[] weights, int offset, double[] current, double[] growth,
+                         double[] out, int at) {
+        int count = p.count;
+        double targetCash = 100;
+        for (int s = 0; s < count; s++) targetCash -= weights[offset + s];
+        targetCash /= 100;
+        for (int s = 0; s < count; s++) current[s] = weights[offset + s] / 100;
+        double cash = targetCash;
+        double dailyCash = p.cashRate / 100 / PortfolioEngine.TRADING_DAYS;
+        double dailyTarget = p.riskFreeRate / 100 / PortfolioEngine.TRADING_DAYS;
+
+        double growthOfOne = 1, value = 100, peak = 100, sumSqDrawdown = 0;
+        double sum = 0, mean = 0, m2 = 0, downside = 0;
+        boolean anyDownside = false;
+        double[] r = p.stepReturns;
+        for (int i = 0; i < p.steps; i++) {
+            if (p.rebalance[i]) {
+                for (int s = 0; s < count; s++) current[s] = weights[offset + s] / 100;
+                cash = targetCash;
+            }
+            double day = 0;
+            for (int s = 0, k = i * count; s < count; s++, k++) {
+                day += current[s] * r[k];
+                growth[s] = current[s] * (1 + r[k]);
+            }
+            double ret = day + cash * dailyCash;
+
+            growthOfOne *= 1 + ret;
+            value *= 1 + ret;
+            if (value > peak) peak = value;
+            double drawdown = (value - peak) / peak * 100;
+            sumSqDrawdown += drawdown * drawdown;
+            sum += ret;
+            double delta = ret - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (ret - mean);
+            if (ret < dailyTarget) {
+                downside += (ret - dailyTarget) * (ret - dailyTarget);
+                anyDownside = true;
+            }
+
+            double cashAfter = cash * (1 + dailyCash);
+            double total = cashAfter;
+            for (int s = 0; s < count; s++) total += growth[s];
+            if (total > 0) {
+                for (int s = 0; s < count; s++) current[s] = growth[s] / total;
+                cash = cashAfter / total;
+            }
+        }
+
+        int n = p.steps;
+        if (n < 2) {
+            Arrays.fill(out, at, at + METRICS, Double.NaN);
+            return;
+        }
+        double sortino = 0;
+        double excessAnnual = (sum / n - dailyTarget) * PortfolioEngine.TRADING_DAYS;
+        if (!anyDownside) {
+            if (excessAnnual > 0) sortino = Double.POSITIVE_INFINITY;
+        } else {
+            double downsideDev = Math.sqrt(downside / n) * Math.sqrt(PortfolioEngine.TRADING_DAYS);
+            if (downsideDev != 0) sortino = excessAnnual / downsideDev;
+        }
+        double upi = 0;
+        double ulcer = Math.sqrt(sumSqDrawdown / (n + 1)); // +1 for the initial point
+        if (ulcer != 0) {
+            double years = (n + 1) / PortfolioEngine.TRADING_DAYS;
+            double annualized = (Math.pow(1 + (value / 100 - 1), 1 / years) - 1) * 100;
+            upi = (annualized - p.riskFreeRate) / ulcer;
+        }
+        out[at] = (growthOfOne - 1) * 100;
+        out[at + 1] = Math.sqrt(m2 / (n - 1)) * Math.sqrt(PortfolioEngine.TRADING_DAYS) * 100;
+        out[at + 2] = sortino;
+        out[at + 3] = upi;
+    }
+
+    /**
+     * The frontend's {@code scoreResults} normalization: each metric min-max scaled over the valid candidates of a
+     * pass (0.5 when all are equal) and combined with the normalized objective weights. An infinite Sortino (no
+     * day below the risk-free target) is capped at the largest finite one, which keeps scores comparable where
+     * the frontend would get NaN. A {@code saturating} scale clamps the normalized Sortino and UPI to [0, 1]: both
+     * grow without bound as risk vanishes, so beyond the range the scale was built from they get no extra credit
+     * (see {@link ContinuousSolver}).
+     */
+    record Scale(double[] min, double[] max, double[] weights, double sortinoCap, boolean saturating) {
+
+        static Scale of(double[] metrics, int size, Objective objective) {
+            return of(metrics, 0, size, objective);
+        }
+
+        /** The scale of candidates {@code [from, to)}. */
+        static Scale of(double[] metrics, int from, int to, Objective objective) {
+            double cap = Double.NEGATIVE_INFINITY;
+            for (int c = from; c < to; c++) {
+                double v = metrics[c * METRICS + 2];
+                if (Double.isFinite(v) && v > cap) cap = v;
+            }
+            if (cap == Double.NEGATIVE_INFINITY) cap = 0;
+            double[] min = new double[METRICS], max = new double[METRICS];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            for (int c = from; c < to; c++) {
+                if (Double.isNaN(metrics[c * METRICS])) continue;
+                for (int m = 0; m < METRICS; m++) {
+                    double v = m == 2 ? Math.min(metrics[c * METRICS + m], cap) : metrics[c * METRICS + m];
+                    if (v < min[m]) min[m] = v;
+                    if (v > max[m]) max[m] = v;
+                }
+            }
+            double sum = objective.perf() + objective.vol() + objective.sortino() + objective.upi();
+            double[] w = {objective.perf() / sum, -objective.vol() / sum, objective.sortino() / sum,
+                    objective.upi() / sum};
+            return new Scale(min, max, w, cap, false);
+        }
+
+        Scale saturated() {
+            return new Scale(min, max, weights, sortinoCap, true);
+        }
+
+        /** Score of the candidate whose metrics start at {@code metrics[at]}; NaN for an invalid candidate. */
+        double score(double[] metrics, int at) {
+            if (Double.isNaN(metrics[at])) return Double.NaN;
+            double score = 0;
+            for (int m = 0; m < METRICS; m++) {
+                double v = m == 2 ? sortino(metrics[at + m]) : metrics[at + m];
+                double range = max[m] - min[m];
+                double norm = range == 0 ? 0.5 : (v - min[m]) / range;
+                if (saturating && m >= 2) norm = Math.min(1, Math.max(0, norm));
+                score += weights[m] * norm;
+            }
+            return score;
+        }
+
+        double sortino(double v) {
+            return Math.min(v, sortinoCap);
+        }
+    }
+
+    /** Scores of the first {@code size} candidates, normalized over them. */
+    static double[] score(double[] metrics, int size, Objective objective) {
+        Scale scale = Scale.of(metrics, size, objective);
+        double[] scores = new double[size];
+        for (int c = 0; c < size; c++) scores[c] = scale.score(metrics, c * METRICS);
+        return scores;
+    }
+
+    /** Indices of the {@code k} best scores, best first; ties keep enumeration order and NaN never ranks. */
+    static int[] best(double[] scores, int k) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, (a, b) -> {
+            int cmp = Double.compare(scores[a], scores[b]);
+            return cmp != 0 ? cmp : Integer.compare(b, a);
+        });
+        for (int c = 0; c < scores.length; c++) {
+            if (Double.isNaN(scores[c])) continue;
+            heap.add(c);
+            if (heap.size() > k) heap.poll();
+        }
+        int[] out = new int[heap.size()];
+        for (int i = out.length - 1; i >= 0; i--) out[i] = heap.poll();
+        return out;
+    }
+
+    /** The {@code limit} best of {@code set}, scored over the whole set. */
+    static List<Candidate> ranked(Candidates set, double[] metrics, Objective objective, int limit) {
+        return ranked(set, metrics, Scale.of(metrics, set.size, objective), limit);
+    }
+
+    static List<Candidate> ranked(Candidates set, double[] metrics, Scale scale, int limit) {
+        double[] scores = new double[set.size];
+        for (int c = 0; c < set.size; c++) scores[c] = scale.score(metrics, c * METRICS);
+        List<Candidate> out = new ArrayList<>();
+        for (int c : best(scores, limit)) {
+            int at = c * METRICS;
+            out.add(new Candidate(set.weights(c), metrics[at], metrics[at + 1], scale.sortino(metrics[at + 2]),
+                    metrics[at + 3], scores[c]));
+        }
+        return List.copyOf(out);
+    }
+
+    /** Evaluates candidates {@code [from, to)}, splitting until a range fits in one leaf. */
+    private static final class EvaluateTask extends RecursiveAction {
+        private final Job job;
+        private final Problem problem;
+        private final Candidates candidates;
+        private final double[] metrics;
+        private final int from, to;
+
+        EvaluateTask(Job job, Problem problem, Candidates candidates, double[] metrics, int from, int to) {
+            this.job = job;
+            this.problem = problem;
+            this.candidates = candidates;
+            this.metrics = metrics;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (job.cancelled) return;
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new EvaluateTask(job, problem, candidates, metrics, from, mid),
+                        new EvaluateTask(job, problem, candidates, metrics, mid, to));
+                return;
+            }
+            double[] current = new double[problem.count], growth = new double[problem.count];
+            for (int c = from; c < to; c++) {
+                evaluate(problem, candidates.weights, c * problem.count, current, growth, metrics, c * METRICS);
+            }
+            job.done.addAndGet(to - from);
+        }
+    }
+
+    /**
+     * Weightings stored flat, {@code width} per candidate, in insertion order; optionally without duplicates
+     * (an open-addressing index over the stored rows). Exceeding {@code limit} is a request error.
+     */
+    static final class Candidates {
+        private final int width, limit;
+        private final boolean distinct;
+        double[] weights;
+        int size;
+        private int[] table; // row + 1, 0 = empty
+
+        Candidates(int width, int limit, boolean distinct) {
+            this.width = width;
+            this.limit = limit;
+            this.distinct = distinct;
+            this.weights = new double[width * 1024];
+            if (distinct) table = new int[4096];
+        }
+
+        void add(double[] row) {
+            if (distinct && indexOf(row) >= 0) return;
+            if (size == limit) throw new TooManyCandidates(limit);
+            if ((size + 1) * width > weights.length) weights = Arrays.copyOf(weights, weights.length * 2);
+            System.arraycopy(row, 0, weights, size * width, width);
+            size++;
+            if (distinct) {
+                if (size * 2 > table.length) rehash();
+                else insert(size - 1);
+            }
+        }
+
+        double[] weights(int c) {
+            return Arrays.copyOfRange(weights, c * width, (c + 1) * width);
+        }
+
+        private int indexOf(double[] row) {
+            int mask = table.length - 1;
+            for (int slot = hash(row, 0) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+                int c = table[slot] - 1;
+                if (Arrays.equals(weights, c * width, (c + 1) * width, row, 0, width)) return c;
+            }
+            return -1;
+        }
+
+        private void insert(int c) {
+            int mask = table.length - 1;
+            int slot = hash(weights, c * width) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = c + 1;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            for (int c = 0; c < size; c++) insert(c);
+        }
+
+        private int hash(double[] a, int from) {
+            int h = 1;
+            for (int i = from; i < from + width; i++) h = 31 * h + Double.hashCode(a[i]);
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /** A grid pass would exceed its candidate limit. */
+    static final class TooManyCandidates extends IllegalArgumentException {
+        TooManyCandidates(int limit) {
+            super("More than " + limit + " candidate weightings; narrow the bounds or use method=continuous");
+        }
+    }
+
+    /** {@link #submit} while the queue is full. */
+    public static final class TooManyJobs extends IllegalStateException {
+        TooManyJobs(int limit) {
+            super("The optimizer already has " + limit + " jobs queued or running; try again later");
+        }
+    }
+
+    /**
+     * The frontend's {@code generateCandidates} recursion: per symbol {@code w = lower; w <= upper; w += step},
+     * keeping full weightings whose total lies within the bounds. A branch stops as soon as the smallest
+     * reachable total exceeds the maximum, and skips values whose largest reachable total stays below the
+     * minimum. Enumeration stops early once {@code cancelled} reports true.
+     */
+    private static final class Grid {
+        private final double[] lower, upper, restMin, restMax, current;
+        private final double step, totalMin, totalMax;
+        private final Candidates out;
+        private final BooleanSupplier cancelled;
+
+        Grid(double[] lower, double[] upper, double step, double totalMin, double totalMax, Candidates out,
+             BooleanSupplier cancelled) {
+            int n = lower.length;
+            this.lower = lower;
+            this.upper = upper;
+            this.step = step;
+            this.totalMin = totalMin;
+            this.totalMax = totalMax;
+            this.out = out;
+            this.cancelled = cancelled;
+            this.current = new double[n];
+            this.restMin = new double[n + 1];
+            this.restMax = new double[n + 1];
+            for (int s = n - 1; s >= 0; s--) {
+                restMin[s] = restMin[s + 1] + lower[s];
+                restMax[s] = restMax[s + 1] + upper[s];
+            }
+        }
+
+        void enumerate() {
+            recurse(0, 0);
+        }
+
+        private void recurse(int idx, double total) {
+            if (idx == current.length) {
+                if (total >= totalMin && total <= totalMax) out.add(current);
+                return;
+            }
+            for (double w = lower[idx]; w <= upper[idx]; w += step) {
+                if (cancelled.getAsBoolean()) return;
+                double partial = total + w;
+                if (partial + restMin[idx + 1] > totalMax + SLACK) break;
+                if (partial + restMax[idx + 1] < totalMin - SLACK) continue;
+                current[idx] = w;
+                recurse(idx + 1, partial);
+            }
+        }
+    }
+
+    private static final class Job {
+        final String id;
+        final Spec spec;
+        final List<Consumer<Event>> listeners = new CopyOnWriteArrayList<>();
+        final AtomicLong done = new AtomicLong();
+        volatile String state = "queued";
+        volatile String method = "";
+        volatile String phase = "";
+        volatile String error;
+        volatile long total;
+        volatile double progress;
+        volatile List<Candidate> top = List.of();
+        volatile boolean cancelled;
+        volatile long startedAt, finishedAt;
+        volatile Future<?> future;
+
+        Job(String id, Spec spec) {
+            this.id = id;
+            this.spec = spec;
+        }
+
+        Status status() {
+            long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+            long elapsed = startedAt == 0 ? 0 : end - startedAt;
+            return new Status(id, state, method, phase, done.get(), total, progress, spec.symbols(), top, error,
+                    elapsed);
+        }
+
+        void finish(String event, String message) {
+            error = message;
+            state = switch (event) {
+                case "result" -> "done";
+                case "cancelled" -> "cancelled";
+                default -> "failed";
+            };
+            finishedAt = System.currentTimeMillis();
+            publish(event);
+            listeners.clear();
+        }
+
+        void publish(String name) {
+            Event event = new Event(name, status());
+            for (Consumer<Event> listener : listeners) {
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    listeners.remove(listener);
+                }
+            }
+        }
+    }
+}
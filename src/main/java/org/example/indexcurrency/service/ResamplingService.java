@@ -0,0 +1,122 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.ChartData;
+import org.example.indexcurrency.model.ResamplePeriod;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Resamples a daily series to weekly/monthly/quarterly/yearly periods ({@link ResamplePeriod}, with anchors):
+ * OHLC bars, the first or last bar of each period, or period-over-period returns. Periods follow the bar's
+ * date in the exchange timezone, like {@link BarRollup}.
+ *
+ * <p>Bucketing is a single pass over the timestamps that compares each bar against the current period's end
+ * instant and only does date arithmetic when a bar crosses it, so the work per bar is one comparison. Results
+ * are cached per series version and window, like {@link DownsamplingService}.
+ */
+@Service
+public class ResamplingService {
+
+    /** How the bars of one period collapse into one output bar. */
+    public enum Aggregation {
+        /** Open of the first bar, max high, min low, close/adjClose of the last bar, summed volume/dividends. */
+        OHLC,
+        /** The period's first bar as-is. */
+        FIRST,
+        /** The period's last bar as-is. */
+        LAST;
+
+        public static Aggregation parse(String how) {
+            try {
+                return valueOf(how.trim().toUpperCase(Locale.US));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Unsupported aggregation: " + how);
+            }
+        }
+    }
+
+    /**
+     * Period returns from last adjClose to last adjClose. Period {@code i} is labelled {@code periods[i]} (its
+     * end date) and spans bars {@code start[i]..end[i]}; the first period has no base, so it is omitted.
+     * {@code returns[i]} is {@code null} when the base is not positive. A partial first or last period (the
+     * series starting mid-period, the current unfinished one) can be recognised from its bar span.
+     */
+    public record PeriodReturns(String symbol, String currency, String period, List<String> periods,
+                                long[] start, long[] end, List<Double> returns) {}
+
+    /** Row ranges per period: period {@code p} is rows {@code [starts[p], starts[p + 1])}. */
+    record Buckets(int[] starts, List<LocalDate> ends) {
+        int count() { return ends.size(); }
+    }
+
+    private final LruCache<String, ChartData> barCache = new LruCache<>(256);
+    private final LruCache<String, PeriodReturns> returnsCache = new LruCache<>(256);
+
+    public ChartData resample(ChartData data, ResamplePeriod period, Aggregation how) {
+        String rows = data.versionKey();
+        String key = rows == null ? null : rows + "|" + period.code() + "|" + how;
+        return barCache.get(key, k -> {
+            Buckets b = buckets(data, period);
+            ChartData out = new ChartData();
+            out.copyMetaFrom(data);
+            int[] s = b.starts();
+            for (int p = 0; p < b.count(); p++) {
+                switch (how) {
+                    case OHLC -> BarRollup.addBar(out, data, s[p], s[p + 1]);
+                    case FIRST -> BarRollup.addBar(out, data, s[p], s[p] + 1);
+                    case LAST -> BarRollup.addBar(out, data, s[p + 1] - 1, s[p + 1]);
+                }
+            }
+            return out;
+        });
+    }
+
+    public PeriodReturns returns(ChartData data, ResamplePeriod period) {
+        String rows = data.versionKey();
+        String key = rows == null ? null : rows + "|" + period.code() + "|returns";
+        return returnsCache.get(key, k -> {
+            Buckets b = buckets(data, period);
+            int m = Math.max(0, b.count() - 1);
+            int[] s = b.starts();
+            List<String> labels = new ArrayList<>(m);
+            long[] start = new long[m], end = new long[m];
+            List<Double> returns = new ArrayList<>(m);
+            List<Long> ts = data.getTimestamps();
+            List<Double> adj = data.getAdjClose();
+            for (int p = 1; p < b.count(); p++) {
+                double base = adj.get(s[p] - 1), last = adj.get(s[p + 1] - 1);
+                labels.add(b.ends().get(p).toString());
+                start[p - 1] = ts.get(s[p]);
+                end[p - 1] = ts.get(s[p + 1] - 1);
+                returns.add(base > 0 ? last / base - 1 : null);
+            }
+            return new PeriodReturns(data.getSymbol(), data.getCurrency(), period.code(), labels, start, end, returns);
+        });
+    }
+
+    static Buckets buckets(ChartData data, ResamplePeriod period) {
+        List<Long> ts = data.getTimestamps();
+        int n = ts.size();
+        ZoneId zone = BarRollup.zoneOf(data.getExchangeTimezoneName());
+        int[] starts = new int[n + 1];
+        List<LocalDate> ends = new ArrayList<>();
+        long boundary = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            long t = ts.get(i);
+            if (t < boundary) continue;
+            LocalDate end = period.endOf(Instant.ofEpochSecond(t).atZone(zone).toLocalDate());
+            boundary = end.plusDays(1).atStartOfDay(zone).toEpochSecond();
+            starts[ends.size()] = i;
+            ends.add(end);
+        }
+        starts[ends.size()] = n;
+        return new Buckets(Arrays.copyOf(starts, ends.size() + 1), ends);
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.ChartData;
+import org.example.indexcurrency.model.SeriesSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Daily series kept resident in memory as {@link CompressedSeries}, so serving a cached symbol decodes from RAM
+ * instead of parsing its CSV segments. Entries are keyed by series key and only served for the exact stored
+ * version they were built from; {@link CsvCacheService} replaces an entry whenever it rewrites the series.
+ *
+ * <p>Bounded by the coded size ({@code cache.resident.max-bytes}, default 128 MiB), least-recently-used first;
+ * 0 disables residency. Compressed, a 30-year daily history takes a few hundred KiB at most. The coded bytes are
+ * off-heap (direct buffers), so the budget must stay below {@code -XX:MaxDirectMemorySize}, which defaults to
+ * the maximum heap size.
+ *
+ * <p>The most recently used series ({@code cache.resident.hot-series}, default 32) are also kept decoded as
+ * immutable {@link SeriesSnapshot}s, shared by all readers without copying. A rewrite derives the new snapshot
+ * from the old one, so a daily refresh costs only the appended rows.
+ */
+@Service
+public class ResidentSeriesStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ResidentSeriesStore.class);
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, CompressedSeries> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, SeriesSnapshot> hot;
+    private long bytes;
+
+    public ResidentSeriesStore(@Value("${cache.resident.max-bytes:134217728}") long maxBytes,
+                               @Value("${cache.resident.hot-series:32}") int hotSeries) {
+        this.maxBytes = maxBytes;
+        this.hot = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SeriesSnapshot> eldest) {
+                return size() > hotSeries;
+            }
+        };
+    }
+
+    public boolean enabled() {
+        return maxBytes > 0;
+    }
+
+    /** The resident series for {@code key} if it was built from exactly {@code version}, else {@code null}. */
+    public synchronized CompressedSeries get(String key, long version) {
+        CompressedSeries s = entries.get(key);
+        return s != null && s.version() == version ? s : null;
+    }
+
+    /**
+     * Shared immutable snapshot of {@code key} at exactly {@code version}, decoding the resident series into the
+     * hot set on first use; {@code null} when not resident at that version.
+     */
+    public SeriesSnapshot snapshot(String key, long version) {
+        CompressedSeries cold;
+        synchronized (this) {
+            SeriesSnapshot s = hot.get(key);
+            if (s != null && s.version() == version) return s;
+            cold = get(key, version);
+        }
+        if (cold == null) return null;
+        SeriesSnapshot s = SeriesSnapshot.of(cold.toChartData());
+        synchronized (this) {
+            SeriesSnapshot current = hot.get(key);
+            if (current == null || current.version() <= version) hot.put(key, s);
+        }
+        return s;
+    }
+
+    /** Compress and keep {@code data} (a full, versioned series) for {@code key}, replacing any older entry. */
+    public void put(String key, ChartData data) {
+        if (!enabled() || data.getVersion() == 0) return;
+        CompressedSeries s = CompressedSeries.of(data);
+        if (s.sizeBytes() > maxBytes) return;
+        SeriesSnapshot previous;
+        synchronized (this) {
+            previous = hot.get(key);
+        }
+        // Only a series already hot stays hot; it keeps its unchanged chunks.
+        SeriesSnapshot next = previous != null && previous.version() < data.getVersion()
+                ? previous.update(data) : null;
+        synchronized (this) {
+            SeriesSnapshot current = hot.get(key);
+            if (next != null && (current == null || current.version() < next.version())) hot.put(key, next);
+            CompressedSeries old = entries.put(key, s);
+            if (old != null) bytes -= old.sizeBytes();
+            bytes += s.sizeBytes();
+            Iterator<CompressedSeries> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().sizeBytes();
+                eldest.remove();
+            }
+        }
+        log.debug("Resident {}: {} rows in {} bytes", key, s.rows(), s.sizeBytes());
+    }
+
+    public synchronized void remove(String key) {
+        CompressedSeries old = entries.remove(key);
+        if (old != null) bytes -= old.sizeBytes();
+        hot.remove(key);
+    }
+
+    /** Series count and total coded bytes currently resident. */
+    public synchronized long[] stats() {
+        return new long[]{entries.size(), bytes};
+    }
+}
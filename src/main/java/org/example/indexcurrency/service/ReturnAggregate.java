@@ -0,0 +1,136 @@
+package org.example.indexcurrency.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Running state of a daily return series from which {@link MetricsEngine.Metrics} are read off without another
+ * pass: the count and central moments (Welford/Terriberry updates up to the fourth moment), the squared shortfall
+ * below the risk-free target, and the equity value, its running peak and the sum of squared drawdowns. Appending a
+ * return is O(1), so a series that grows by a bar only needs that bar folded in.
+ *
+ * <p>Not thread-safe.
+ */
+final class ReturnAggregate {
+
+    private final double riskFreeRate;
+    private final double dailyTarget;
+    private int count;
+    private double mean, m2, m3, m4;
+    private double downside;
+    private int below;
+    private double growth = 1, peak = 1, sumSqDrawdown;
+
+    /** An empty aggregate measuring Sharpe, Sortino and UPI against {@code riskFreeRate} (annual percent). */
+    ReturnAggregate(double riskFreeRate) {
+        this.riskFreeRate = riskFreeRate;
+        this.dailyTarget = riskFreeRate / 100 / PortfolioEngine.TRADING_DAYS;
+    }
+
+    void add(double r) {
+        // Welford/Terriberry update of the central moments, highest first (each uses the previous lower ones).
+        int i = count++;
+        int k = count;
+        double delta = r - mean, deltaN = delta / k, deltaN2 = deltaN * deltaN, term = delta * deltaN * i;
+        mean += deltaN;
+        m4 += term * deltaN2 * ((double) k * k - 3 * k + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+        m3 += term * deltaN * (k - 2) - 3 * deltaN * m2;
+        m2 += term;
+
+        if (r < dailyTarget) {
+            downside += (r - dailyTarget) * (r - dailyTarget);
+            below++;
+        }
+
+        growth *= 1 + r;
+        if (growth > peak) peak = growth;
+        double dd = (growth - peak) / peak * 100;
+        sumSqDrawdown += dd * dd;
+    }
+
+    int count() { return count; }
+
+    /** Value of one unit invested before the first return. */
+    double growth() { return growth; }
+
+    double riskFreeRate() { return riskFreeRate; }
+
+    ReturnAggregate copy() {
+        ReturnAggregate c = new ReturnAggregate(riskFreeRate);
+        c.count = count;
+        c.mean = mean;
+        c.m2 = m2;
+        c.m3 = m3;
+        c.m4 = m4;
+        c.downside = downside;
+        c.below = below;
+        c.growth = growth;
+        c.peak = peak;
+        c.sumSqDrawdown = sumSqDrawdown;
+        return c;
+    }
+
+    /** Metrics of the returns added so far (at least one), which span {@code from} to {@code to}. */
+    MetricsEngine.Metrics metrics(long from, long to) {
+        int n = count;
+        double sqrtDays = Math.sqrt(PortfolioEngine.TRADING_DAYS);
+        double sd = n > 1 ? Math.sqrt(m2 / (n - 1)) : Double.NaN;
+        Double sharpe = sd == 0 || Double.isNaN(sd) ? null
+                : (mean * PortfolioEngine.TRADING_DAYS - riskFreeRate / 100) / (sd * sqrtDays);
+
+        double excessAnnual = (mean - dailyTarget) * PortfolioEngine.TRADING_DAYS;
+        Double sortino;
+        if (below == 0) {
+            sortino = excessAnnual > 0 ? Double.POSITIVE_INFINITY : null;
+        } else {
+            double downsideDev = Math.sqrt(downside / n) * sqrtDays;
+            sortino = downsideDev == 0 ? null : excessAnnual / downsideDev;
+        }
+
+        Double kurtosis = n < 4 || m2 == 0 ? null : (m4 / n) / ((m2 / n) * (m2 / n)) - 3;
+
+        double ulcer = Math.sqrt(sumSqDrawdown / (n + 1));
+        Double upi = null;
+        if (ulcer != 0) {
+            double years = (n + 1) / PortfolioEngine.TRADING_DAYS;
+            double annualized = (Math.pow(growth, 1 / years) - 1) * 100;
+            upi = (annualized - riskFreeRate) / ulcer;
+        }
+
+        return new MetricsEngine.Metrics(n, from, to, (growth - 1) * 100,
+                Double.isNaN(sd) ? null : sd * sqrtDays * 100, sharpe, sortino, kurtosis, ulcer, upi);
+    }
+
+    /** The state as {@code name -> value} strings that {@link #fromState} reads back exactly. */
+    Map<String, String> state() {
+        Map<String, String> s = new LinkedHashMap<>();
+        s.put("riskFreeRate", Double.toString(riskFreeRate));
+        s.put("count", Integer.toString(count));
+        s.put("mean", Double.toString(mean));
+        s.put("m2", Double.toString(m2));
+        s.put("m3", Double.toString(m3));
+        s.put("m4", Double.toString(m4));
+        s.put("downside", Double.toString(downside));
+        s.put("below", Integer.toString(below));
+        s.put("growth", Double.toString(growth));
+        s.put("peak", Double.toString(peak));
+        s.put("sumSqDrawdown", Double.toString(sumSqDrawdown));
+        return s;
+    }
+
+    /** An aggregate from {@link #state}; throws if a field is missing or malformed. */
+    static ReturnAggregate fromState(Map<String, String> s) {
+        ReturnAggregate a = new ReturnAggregate(Double.parseDouble(s.get("riskFreeRate")));
+        a.count = Integer.parseInt(s.get("count"));
+        a.mean = Double.parseDouble(s.get("mean"));
+        a.m2 = Double.parseDouble(s.get("m2"));
+        a.m3 = Double.parseDouble(s.get("m3"));
+        a.m4 = Double.parseDouble(s.get("m4"));
+        a.downside = Double.parseDouble(s.get("downside"));
+        a.below = Integer.parseInt(s.get("below"));
+        a.growth = Double.parseDouble(s.get("growth"));
+        a.peak = Double.parseDouble(s.get("peak"));
+        a.sumSqDrawdown = Double.parseDouble(s.get("sumSqDrawdown"));
+        return a;
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.BarInterval;
+import org.example.indexcurrency.model.ChartData;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aligned daily returns of several cached series in one currency, the common first step of portfolio returns,
+ * the optimizer and correlations. The frontend repeats this alignment per metric with a {@code closestIndex}
+ * binary search per point; here it runs once per symbol set as a single forward merge and the result is shared.
+ *
+ * <p>Each constituent is converted from the cutoff on and aligned to the shortest one's bars by {@link DayIndex
+ * day}, taking the same day's bar or else the closest one, as the frontend's {@code closestIndex} does. Matrices
+ * are memoized by symbols, currency, window and the versions of every series read (constituents and forex pairs),
+ * and dropped as soon as one of those series is rewritten ({@link SeriesUpdatedEvent}).
+ */
+@Service
+public class ReturnMatrixService {
+
+    // A constituent must start no later than this after the cutoff, as in the frontend.
+    private static final long START_TOLERANCE_SECONDS = 7 * 86400L;
+
+    /**
+     * Aligned returns: {@code returns[s][i]} is symbol {@code s}'s return over day {@code i}, which ends on
+     * {@code timestamps[i]} and starts on the previous aligned bar ({@code start} for day 0); 0 after a zero price.
+     */
+    public record ReturnMatrix(List<String> symbols, String currency, long start, long[] timestamps,
+                               double[][] returns, String cacheKey) {
+        public int assets() { return returns.length; }
+
+        public int days() { return timestamps.length; }
+    }
+
+    // A cached matrix and the series keys it was built from, for invalidation.
+    private record Entry(ReturnMatrix matrix, Set<String> sources) {}
+
+    private final CsvCacheService cacheService;
+    private final FxService fxService;
+    private final LruCache<String, Entry> cache = new LruCache<>(64);
+
+    public ReturnMatrixService(CsvCacheService cacheService, FxService fxService) {
+        this.cacheService = cacheService;
+        this.fxService = fxService;
+    }
+
+    /**
+     * The returns of {@code symbols} in {@code currency} from {@code cutoff} (epoch seconds) to the latest common
+     * bar, or {@code null} if any constituent is empty, starts more than a week after the cutoff, or has fewer than
+     * two convertible bars.
+     */
+    public ReturnMatrix matrix(List<String> symbols, long cutoff, String currency) {
+        if (symbols.isEmpty()) throw new IllegalArgumentException("No symbols");
+        if (!FxService.CURRENCIES.contains(currency)) {
+            throw new IllegalArgumentException("Unsupported currency: " + currency);
+        }
+        ChartData[] series = new ChartData[symbols.size()];
+        int[] firstRow = new int[series.length];
+        StringBuilder key = new StringBuilder(currency).append('|');
+        for (int s = 0; s < series.length; s++) {
+            ChartData data = cacheService.getChartData(symbols.get(s), CsvCacheService.MAX_RANGE, "1d");
+            List<Long> ts = data.getTimestamps();
+            if (ts.isEmpty() || cutoff < ts.getFirst() - START_TOLERANCE_SECONDS) return null;
+            int i = Collections.binarySearch(ts, cutoff);
+            firstRow[s] = i >= 0 ? i : -i - 1;
+            series[s] = data;
+            String v = data.versionKey();
+            if (key != null) key = v == null ? null : key.append(v).append('@').append(firstRow[s]).append(';');
+        }
+        // One conversion per source currency, so each forex pair is read once per matrix.
+        Map<String, FxService.Conversion> conversions = new HashMap<>();
+        for (ChartData data : series) {
+            FxService.Conversion fx = conversions.computeIfAbsent(currencyOf(data),
+                    from -> fxService.conversion(from, currency));
+            if (key != null) key = fx.versionKey() == null ? null : key.append(fx.versionKey());
+        }
+        Entry entry = cache.get(key == null ? null : key.toString(), k -> {
+            ReturnMatrix m = build(symbols, series, firstRow, conversions, currency, k);
+            return m == null ? null : new Entry(m, sources(symbols, series, currency));
+        });
+        return entry == null ? null : entry.matrix();
+    }
+
+    @EventListener
+    public void onSeriesUpdated(SeriesUpdatedEvent event) {
+        cache.removeIf(e -> e.sources().contains(event.key()));
+    }
+
+    private ReturnMatrix build(List<String> symbols, ChartData[] series, int[] firstRow,
+                               Map<String, FxService.Conversion> conversions, String currency, String cacheKey) {
+        int count = series.length;
+        long[][] ts = new long[count][];
+        int[][] days = new int[count][];
+        double[][] px = new double[count][];
+        int ref = 0;
+        for (int s = 0; s < count; s++) {
+            ChartData data = series[s];
+            int n = data.getTimestamps().size() - firstRow[s];
+            long[] t = new long[n];
+            double[] p = new double[n];
+            int[] d = DayIndex.days(data.getTimestamps(), firstRow[s], firstRow[s] + n,
+                    BarRollup.zoneOf(data.getExchangeTimezoneName()));
+            for (int i = 0; i < n; i++) {
+                t[i] = data.getTimestamps().get(firstRow[s] + i);
+                p[i] = data.getAdjClose().get(firstRow[s] + i);
+            }
+            double[] converted = conversions.get(currencyOf(data)).convert(d, p, n);
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                if (Double.isNaN(converted[i])) continue;
+                t[kept] = t[i];
+                d[kept] = d[i];
+                converted[kept++] = converted[i];
+            }
+            if (kept <= 1) return null;
+            ts[s] = Arrays.copyOf(t, kept);
+            days[s] = Arrays.copyOf(d, kept);
+            px[s] = Arrays.copyOf(converted, kept);
+            if (ts[s].length < ts[ref].length) ref = s; // shortest, first on ties
+        }
+
+        long[] refTs = ts[ref];
+        int[] refDays = days[ref];
+        int steps = refTs.length - 1;
+        double[][] returns = new double[count][steps];
+        for (int s = 0; s < count; s++) {
+            double[] r = returns[s];
+            int[] rows = DayIndex.match(days[s], days[s].length, refDays, DayIndex.Fill.NEAREST, Integer.MAX_VALUE);
+            double prev = px[s][rows[0]];
+            for (int i = 0; i < steps; i++) {
+                double p = px[s][rows[i + 1]];
+                r[i] = prev == 0 ? 0 : (p - prev) / prev;
+                prev = p;
+            }
+        }
+        return new ReturnMatrix(List.copyOf(symbols), currency, refTs[0],
+                Arrays.copyOfRange(refTs, 1, refTs.length), returns, cacheKey);
+    }
+
+    private Set<String> sources(List<String> symbols, ChartData[] series, String currency) {
+        Set<String> out = new HashSet<>();
+        for (int s = 0; s < series.length; s++) {
+            out.add(CsvCacheService.seriesKey(symbols.get(s), BarInterval.DAILY));
+            for (String pair : fxService.pairSymbols(currencyOf(series[s]), currency)) {
+                out.add(CsvCacheService.seriesKey(pair, BarInterval.DAILY));
+            }
+        }
+        return out;
+    }
+
+    private static String currencyOf(ChartData data) {
+        return data.getCurrency() != null ? data.getCurrency() : "USD";
+    }
+}
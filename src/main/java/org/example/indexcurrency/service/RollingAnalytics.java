@@ -0,0 +1,204 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.RebalanceFrequency;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rolling-window volatility, Sharpe ratio, drawdown, beta and correlation curves for a ticker or a portfolio,
+ * over the aligned daily returns of {@link ReturnMatrixService}.
+ *
+ * <p>Every curve is produced in one pass, O(n) however long the window: the window's mean, variance and
+ * covariance with the benchmark are kept by Welford-style updates that add the entering return and remove the
+ * leaving one ({@link WindowMoments}), and the window's highest equity value by a monotonic deque
+ * ({@link WindowMax}), instead of recomputing each window from scratch (O(n&middot;w)). Results are memoized by
+ * the return matrix key and the request.
+ */
+@Service
+public class RollingAnalytics {
+
+    /**
+     * A rolling request. {@code weights} (percent per symbol, the rest cash at {@code cashRate}) makes it a
+     * portfolio rebalanced at {@code rebalance}; without weights it is the single symbol's own returns.
+     * {@code benchmark} (optional) adds beta and correlation; {@code window} is in trading days.
+     */
+    public record Spec(List<String> symbols, double[] weights, double cashRate, RebalanceFrequency rebalance,
+                       String benchmark, int window, long cutoff, String currency, double riskFreeRate) {
+        public Spec {
+            if (symbols.isEmpty()) throw new IllegalArgumentException("No symbols");
+            if (weights == null && symbols.size() != 1) {
+                throw new IllegalArgumentException("Weights are required for more than one symbol");
+            }
+            if (weights != null && weights.length != symbols.size()) {
+                throw new IllegalArgumentException("Expected one weight per symbol");
+            }
+            if (window < 2) throw new IllegalArgumentException("window must be at least 2 days");
+        }
+    }
+
+    /**
+     * Rolling curves; element {@code i} covers the {@code window} daily returns ending on {@code timestamps[i]}.
+     * Volatility (annualized) and drawdown (from the window's highest value) are percent. Sharpe, beta and
+     * correlation are {@code null} where undefined (a flat window), and beta/correlation are {@code null}
+     * throughout without a benchmark.
+     */
+    public record RollingCurves(List<String> symbols, String benchmark, String currency, int window,
+                                long[] timestamps, double[] volatility, Double[] sharpe, double[] drawdown,
+                                Double[] beta, Double[] correlation) {}
+
+    private final ReturnMatrixService returnMatrices;
+    private final LruCache<String, RollingCurves> cache = new LruCache<>(128);
+
+    public RollingAnalytics(ReturnMatrixService returnMatrices) {
+        this.returnMatrices = returnMatrices;
+    }
+
+    /** The curves for {@code spec}, or {@code null} without history covering the cutoff or a single full window. */
+    public RollingCurves rolling(Spec spec) {
+        List<String> all = new ArrayList<>(spec.symbols());
+        int benchmarkRow = -1;
+        if (spec.benchmark() != null) {
+            benchmarkRow = all.indexOf(spec.benchmark());
+            if (benchmarkRow < 0) {
+                benchmarkRow = all.size();
+                all.add(spec.benchmark());
+            }
+        }
+        ReturnMatrixService.ReturnMatrix matrix = returnMatrices.matrix(all, spec.cutoff(), spec.currency());
+        if (matrix == null || matrix.days() < spec.window()) return null;
+        String key = matrix.cacheKey() == null ? null : matrix.cacheKey() + "|" + spec.symbols() + "|"
+                + Arrays.toString(spec.weights()) + "|" + spec.cashRate() + "|" + spec.rebalance().code() + "|"
+                + spec.benchmark() + "|" + spec.window() + "|" + spec.riskFreeRate();
+        int bench = benchmarkRow;
+        return cache.get(key, k -> {
+            double[] returns = spec.weights() == null ? matrix.returns()[0]
+                    : PortfolioEngine.simulate(constituents(matrix, spec.symbols().size()), spec.weights(),
+                            spec.cashRate(), spec.rebalance());
+            double[] benchmark = bench < 0 ? null : matrix.returns()[bench];
+            return curves(spec, matrix.timestamps(), returns, benchmark);
+        });
+    }
+
+    /** The first {@code count} rows of {@code matrix} (the portfolio's constituents, without the benchmark). */
+    private static ReturnMatrixService.ReturnMatrix constituents(ReturnMatrixService.ReturnMatrix matrix, int count) {
+        if (count == matrix.assets()) return matrix;
+        return new ReturnMatrixService.ReturnMatrix(matrix.symbols().subList(0, count), matrix.currency(),
+                matrix.start(), matrix.timestamps(), Arrays.copyOf(matrix.returns(), count), null);
+    }
+
+    static RollingCurves curves(Spec spec, long[] timestamps, double[] returns, double[] benchmark) {
+        int n = returns.length, w = spec.window(), out = n - w + 1;
+        double sqrtDays = Math.sqrt(PortfolioEngine.TRADING_DAYS);
+        double[] vol = new double[out], drawdown = new double[out];
+        Double[] sharpe = new Double[out], beta = new Double[out], correlation = new Double[out];
+
+        WindowMoments moments = new WindowMoments();
+        WindowMax peak = new WindowMax(w + 1);
+        // Equity values: value[i + 1] after return i, value[0] = 1. The window of returns [i-w+1, i] spans the
+        // values [i-w+1, i+1].
+        double value = 1;
+        peak.add(0, value);
+        for (int i = 0; i < n; i++) {
+            double b = benchmark == null ? 0 : benchmark[i];
+            moments.add(returns[i], b);
+            if (i >= w) moments.remove(returns[i - w], benchmark == null ? 0 : benchmark[i - w]);
+            value *= 1 + returns[i];
+            peak.expire(i + 1 - w);
+            peak.add(i + 1, value);
+            if (i < w - 1) continue;
+
+            int at = i - w + 1;
+            double sd = moments.sdX();
+            vol[at] = sd * sqrtDays * 100;
+            sharpe[at] = sd == 0 ? null
+                    : (moments.meanX() * PortfolioEngine.TRADING_DAYS - spec.riskFreeRate() / 100) / (sd * sqrtDays);
+            drawdown[at] = (value / peak.max() - 1) * 100;
+            if (benchmark != null) {
+                double varB = moments.varY(), varX = moments.varX();
+                beta[at] = varB == 0 ? null : moments.cov() / varB;
+                correlation[at] = varB == 0 || varX == 0 ? null
+                        : Math.max(-1, Math.min(1, moments.cov() / Math.sqrt(varX * varB)));
+            }
+        }
+        return new RollingCurves(spec.symbols(), spec.benchmark(), spec.currency(), w,
+                Arrays.copyOfRange(timestamps, w - 1, n), vol, sharpe, drawdown, beta, correlation);
+    }
+
+    /**
+     * Sample mean, variance and covariance of a sliding window of {@code (x, y)} pairs, updated in O(1) per pair
+     * entering or leaving (Welford's update and its inverse).
+     */
+    static final class WindowMoments {
+        private int n;
+        private double meanX, meanY, m2X, m2Y, cXY;
+
+        void add(double x, double y) {
+            n++;
+            double dx = x - meanX, dy = y - meanY;
+            meanX += dx / n;
+            meanY += dy / n;
+            m2X += dx * (x - meanX);
+            m2Y += dy * (y - meanY);
+            cXY += dx * (y - meanY);
+        }
+
+        void remove(double x, double y) {
+            n--;
+            double dx = x - meanX, dy = y - meanY;
+            meanX -= dx / n;
+            meanY -= dy / n;
+            m2X -= dx * (x - meanX);
+            m2Y -= dy * (y - meanY);
+            cXY -= dx * (y - meanY);
+        }
+
+        double meanX() { return meanX; }
+
+        // Removal can leave a tiny negative residue where the true sum is 0.
+        double varX() { return n > 1 ? Math.max(0, m2X) / (n - 1) : 0; }
+
+        double varY() { return n > 1 ? Math.max(0, m2Y) / (n - 1) : 0; }
+
+        double sdX() { return Math.sqrt(varX()); }
+
+        double cov() { return n > 1 ? cXY / (n - 1) : 0; }
+    }
+
+    /**
+     * Maximum of a sliding window of values by position, as a monotonic deque: values that can never be the
+     * maximum again (an at-least-as-large value came later) are dropped on entry, so each is added and removed
+     * once.
+     */
+    static final class WindowMax {
+        private final int[] positions;
+        private final double[] values;
+        private int head, size;
+
+        WindowMax(int capacity) {
+            positions = new int[capacity];
+            values = new double[capacity];
+        }
+
+        void add(int position, double value) {
+            while (size > 0 && values[slot(size - 1)] <= value) size--;
+            int s = slot(size++);
+            positions[s] = position;
+            values[s] = value;
+        }
+
+        /** Drop values before {@code firstPosition}. */
+        void expire(int firstPosition) {
+            while (size > 0 && positions[head] < firstPosition) {
+                head = (head + 1) % positions.length;
+                size--;
+            }
+        }
+
+        double max() { return values[head]; }
+
+        private int slot(int i) { return (head + i) % positions.length; }
+    }
+}
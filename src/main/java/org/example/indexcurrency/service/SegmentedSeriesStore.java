@@ -0,0 +1,280 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.ChartData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Daily series stored as per-year segments under {@code series/<key>/}, so an incremental update rewrites only
+ * the newest year and every git commit stays a small diff:
+ *
+ * <ul>
+ *   <li>{@code <year>.csv.gz} &mdash; sealed, gzip-compressed years, never rewritten unless their rows change
+ *       (e.g. a gap repair).</li>
+ *   <li>{@code current.csv} &mdash; the year of the latest bar, rewritten on every update.</li>
+ *   <li>{@code manifest.csv} &mdash; the series metadata as {@code # key=value} lines, then one row per
+ *       segment with its time span, row count and checksum.</li>
+ * </ul>
+ *
+ * <p>A dividend only rescales adjClose uniformly across history (Yahoo's re-basing, or the back-adjustment of
+ * an investing.com series), so each segment row also carries an {@code adjScale} applied on read. A write
+ * that merely re-bases a sealed year updates that factor in the manifest instead of rewriting the year.
+ *
+ * <p>Not thread-safe per key; {@link CsvCacheService} serializes access with its per-symbol locks.
+ */
+final class SegmentedSeriesStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedSeriesStore.class);
+    static final String MANIFEST = "manifest.csv";
+    static final String CURRENT = "current.csv";
+    private static final String SEGMENT_COLUMNS = "segment,firstTs,lastTs,rows,firstAdj,lastAdj,adjScale,checksum";
+    // Two adjClose ratios closer than this are the same re-basing factor.
+    private static final double SCALE_TOLERANCE = 1e-9;
+
+    /** One segment file: its span, row count, first/last stored adjClose and content checksum. */
+    record Segment(String file, long firstTs, long lastTs, int rows,
+                   double firstAdj, double lastAdj, double adjScale, long checksum) {
+        boolean overlaps(long fromTs, long toTs) {
+            return lastTs >= fromTs && firstTs <= toTs;
+        }
+
+        Segment withScale(double scale) {
+            return new Segment(file, firstTs, lastTs, rows, firstAdj, lastAdj, scale, checksum);
+        }
+    }
+
+    /** Series metadata (a row-less {@link ChartData}) and segment list, as read from the manifest. */
+    record Manifest(ChartData meta, List<Segment> segments, long modifiedMillis) {
+        long firstTs() { return segments.isEmpty() ? 0 : segments.getFirst().firstTs(); }
+        long lastTs() { return segments.isEmpty() ? 0 : segments.getLast().lastTs(); }
+        int rows() { return segments.stream().mapToInt(Segment::rows).sum(); }
+    }
+
+    private final Path root;
+
+    SegmentedSeriesStore(Path root) {
+        this.root = root;
+    }
+
+    boolean exists(String key) {
+        return Files.exists(root.resolve(key).resolve(MANIFEST));
+    }
+
+    /** Keys of every stored series. */
+    List<String> keys() {
+        List<String> keys = new ArrayList<>();
+        if (!Files.isDirectory(root)) return keys;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                if (Files.exists(dir.resolve(MANIFEST))) keys.add(dir.getFileName().toString());
+            }
+        } catch (IOException e) {
+            log.warn("Could not list segmented series under {}: {}", root, e.getMessage());
+        }
+        return keys;
+    }
+
+    /** The manifest of a series, or {@code null} if it isn't stored (or is unreadable). */
+    Manifest readManifest(String key) {
+        Path file = root.resolve(key).resolve(MANIFEST);
+        if (!Files.exists(file)) return null;
+        try (BufferedReader br = Files.newBufferedReader(file)) {
+            ChartData meta = SeriesCsv.newSeries(key);
+            List<Segment> segments = new ArrayList<>();
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (SeriesCsv.readMeta(line, meta) || line.startsWith("segment,") || line.isBlank()) continue;
+                String[] p = line.split(",");
+                segments.add(new Segment(p[0], Long.parseLong(p[1]), Long.parseLong(p[2]), Integer.parseInt(p[3]),
+                        Double.parseDouble(p[4]), Double.parseDouble(p[5]), Double.parseDouble(p[6]),
+                        Long.parseLong(p[7])));
+            }
+            return new Manifest(meta, segments, Files.getLastModifiedTime(file).toMillis());
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to read manifest {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /** The whole series, or {@code null} if it isn't stored. */
+    ChartData read(String key) {
+        return read(key, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Rows of every segment overlapping {@code [fromTs, toTs]}, or {@code null} if the series isn't stored.
+     * Whole segments are returned; callers slice to the exact window.
+     */
+    ChartData read(String key, long fromTs, long toTs) {
+        Manifest manifest = readManifest(key);
+        if (manifest == null) return null;
+        ChartData data = SeriesCsv.newSeries(key);
+        data.copyMetaFrom(manifest.meta());
+        data.setVersion(manifest.modifiedMillis());
+        Path dir = root.resolve(key);
+        try {
+            for (Segment seg : manifest.segments()) {
+                if (!seg.overlaps(fromTs, toTs)) continue;
+                try (InputStream in = open(dir.resolve(seg.file()))) {
+                    SeriesCsv.read(in, data, seg.adjScale());
+                }
+            }
+            return data;
+        } catch (IOException e) {
+            log.error("Failed to read segments of {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Store the full series. Each UTC year becomes a segment; the latest is {@code current.csv} and is always
+     * rewritten, older years are only rewritten if their rows changed (a uniform adjClose re-basing just updates
+     * their {@code adjScale}). Segments no longer present are deleted and the manifest is replaced last.
+     */
+    void write(String key, ChartData data) throws IOException {
+        Path dir = root.resolve(key);
+        Files.createDirectories(dir);
+        Manifest old = readManifest(key);
+        Map<String, Segment> oldByFile = new HashMap<>();
+        if (old != null) old.segments().forEach(s -> oldByFile.put(s.file(), s));
+
+        List<Long> ts = data.getTimestamps();
+        int n = ts.size();
+        List<Segment> segments = new ArrayList<>();
+        int rewritten = 0;
+        int lastYear = n > 0 ? yearOf(ts.get(n - 1)) : 0;
+        int from = 0;
+        while (from < n) {
+            int year = yearOf(ts.get(from));
+            int to = from + 1;
+            while (to < n && yearOf(ts.get(to)) == year) to++;
+
+            String file = year == lastYear ? CURRENT : year + ".csv.gz";
+            long checksum = checksum(data, from, to);
+            double firstAdj = SeriesCsv.asWritten(data.getAdjClose().get(from));
+            double lastAdj = SeriesCsv.asWritten(data.getAdjClose().get(to - 1));
+            Segment prev = oldByFile.get(file);
+            double scale = Double.NaN;
+            if (!CURRENT.equals(file) && prev != null && prev.rows() == to - from && prev.firstTs() == ts.get(from)
+                    && prev.lastTs() == ts.get(to - 1) && prev.checksum() == checksum) {
+                scale = rescaleOf(prev, data.getAdjClose().get(from), data.getAdjClose().get(to - 1));
+            }
+            if (!Double.isNaN(scale)) {
+                segments.add(prev.withScale(scale));
+            } else {
+                writeSegment(dir.resolve(file), data, from, to);
+                segments.add(new Segment(file, ts.get(from), ts.get(to - 1), to - from, firstAdj, lastAdj, 1.0, checksum));
+                rewritten++;
+            }
+            from = to;
+        }
+
+        Set<String> live = new HashSet<>();
+        segments.forEach(s -> live.add(s.file()));
+        for (String file : oldByFile.keySet()) {
+            if (!live.contains(file)) Files.deleteIfExists(dir.resolve(file));
+        }
+        writeManifest(dir, data, segments);
+        data.setVersion(Files.getLastModifiedTime(dir.resolve(MANIFEST)).toMillis());
+        log.info("Wrote segmented cache {}: {} segment(s), {} rewritten", key, segments.size(), rewritten);
+    }
+
+    /** Delete a stored series entirely. */
+    void delete(String key) throws IOException {
+        Path dir = root.resolve(key);
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) Files.deleteIfExists(f);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * The adjScale that maps a sealed segment's stored adjClose onto the new first/last values, or NaN if the
+     * change isn't a single uniform factor (then the segment must be rewritten).
+     */
+    private static double rescaleOf(Segment prev, double newFirst, double newLast) {
+        if (prev.firstAdj() == 0 || prev.lastAdj() == 0) {
+            boolean same = newFirst == prev.firstAdj() * prev.adjScale() && newLast == prev.lastAdj() * prev.adjScale();
+            return same ? prev.adjScale() : Double.NaN;
+        }
+        double s1 = newFirst / prev.firstAdj(), s2 = newLast / prev.lastAdj();
+        if (Math.abs(s1 - s2) > SCALE_TOLERANCE * Math.abs(s1)) return Double.NaN;
+        return Math.abs(s1 - prev.adjScale()) <= SCALE_TOLERANCE * Math.abs(s1) ? prev.adjScale() : s1;
+    }
+
+    /** CRC over every column except adjClose, at the 6-decimal precision the CSV keeps. */
+    private static long checksum(ChartData data, int from, int to) {
+        CRC32 crc = new CRC32();
+        java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(7 * Long.BYTES);
+        for (int i = from; i < to; i++) {
+            buf.clear();
+            buf.putLong(data.getTimestamps().get(i));
+            buf.putLong(SeriesCsv.micros(data.getOpen().get(i)));
+            buf.putLong(SeriesCsv.micros(data.getHigh().get(i)));
+            buf.putLong(SeriesCsv.micros(data.getLow().get(i)));
+            buf.putLong(SeriesCsv.micros(data.getClose().get(i)));
+            buf.putLong(data.getVolume().get(i));
+            buf.putLong(SeriesCsv.micros(data.getDividends().get(i)));
+            crc.update(buf.array(), 0, buf.position());
+        }
+        return crc.getValue();
+    }
+
+    private static void writeSegment(Path file, ChartData data, int from, int to) throws IOException {
+        boolean gzip = file.getFileName().toString().endsWith(".gz");
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = gzip
+                ? new GZIPOutputStream(Files.newOutputStream(tmp), 1 << 16)
+                : Files.newOutputStream(tmp)) {
+            SeriesCsv.writeRows(out, data, from, to);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeManifest(Path dir, ChartData data, List<Segment> segments) throws IOException {
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+            SeriesCsv.writeMeta(out, data);
+            StringBuilder sb = new StringBuilder(SEGMENT_COLUMNS).append('\n');
+            for (Segment s : segments) {
+                sb.append(s.file()).append(',').append(s.firstTs()).append(',').append(s.lastTs()).append(',')
+                        .append(s.rows()).append(',').append(s.firstAdj()).append(',').append(s.lastAdj())
+                        .append(',').append(s.adjScale()).append(',').append(s.checksum()).append('\n');
+            }
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        return file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    private static int yearOf(long epochSeconds) {
+        return Instant.ofEpochSecond(epochSeconds).atZone(ZoneOffset.UTC).getYear();
+    }
+}
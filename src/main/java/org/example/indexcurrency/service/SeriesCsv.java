@@ -0,0 +1,326 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.ChartData;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The cache's CSV layout, shared by flat series files and the segments of {@link SegmentedSeriesStore}:
+ * optional {@code # key=value} metadata lines, a column header, then one row per bar
+ * ({@code date,open,high,low,close,adjclose,volume,dividend}, dividend optional in legacy 7-column files).
+ *
+ * <p>Rows are parsed and written at the byte level over one buffer per file: no per-line strings, no split
+ * arrays and no {@code printf}. Doubles are written with the exact text {@code %.6f} produces, and the plain
+ * decimals that format yields are parsed to the same value {@link Double#parseDouble} returns; anything else
+ * (exponents, NaN, very large values, rounding ties) falls back to the JDK routines.
+ */
+final class SeriesCsv {
+
+    static final String COLUMNS = "date,open,high,low,close,adjclose,volume,dividend";
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int MAX_FIELDS = 8;
+    // Fast fixed-point writing is exact below this magnitude (see micros).
+    private static final double FAST_LIMIT = 1e6;
+    private static final long MICROS = 1_000_000L;
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private SeriesCsv() {}
+
+    /** An empty series with the defaults a file without metadata lines falls back to. */
+    static ChartData newSeries(String symbol) {
+        ChartData data = new ChartData();
+        data.setSymbol(symbol);
+        data.setCurrency("USD");
+        data.setShortName(symbol);
+        return data;
+    }
+
+    static void writeMeta(OutputStream out, ChartData data) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# symbol=").append(data.getSymbol()).append('\n');
+        sb.append("# currency=").append(data.getCurrency()).append('\n');
+        sb.append("# shortName=").append(data.getShortName()).append('\n');
+        sb.append("# exchangeTimezoneName=").append(data.getExchangeTimezoneName()).append('\n');
+        if (data.getFetchedRange() != null) sb.append("# fetchedRange=").append(data.getFetchedRange()).append('\n');
+        if (data.getSource() != null) sb.append("# source=").append(data.getSource()).append('\n');
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Apply a metadata line to {@code data}; returns false if the line is not a {@code #} line. */
+    static boolean readMeta(String line, ChartData data) {
+        if (!line.startsWith("#")) return false;
+        if (line.startsWith("# symbol=")) data.setSymbol(line.substring(9));
+        else if (line.startsWith("# currency=")) data.setCurrency(line.substring(11));
+        else if (line.startsWith("# shortName=")) data.setShortName(line.substring(12));
+        else if (line.startsWith("# exchangeTimezoneName=")) data.setExchangeTimezoneName(line.substring(23));
+        else if (line.startsWith("# fetchedRange=")) data.setFetchedRange(line.substring(15));
+        else if (line.startsWith("# source=")) data.setSource(line.substring(9));
+        return true;
+    }
+
+    /** Write the column header and rows {@code [from, to)}. */
+    static void writeRows(OutputStream out, ChartData data, int from, int to) throws IOException {
+        RowWriter w = new RowWriter(out);
+        w.ascii(COLUMNS).newline();
+        for (int i = from; i < to; i++) {
+            w.number(data.getTimestamps().get(i)).comma()
+                    .fixed6(data.getOpen().get(i)).comma()
+                    .fixed6(data.getHigh().get(i)).comma()
+                    .fixed6(data.getLow().get(i)).comma()
+                    .fixed6(data.getClose().get(i)).comma()
+                    .fixed6(data.getAdjClose().get(i)).comma()
+                    .number(data.getVolume().get(i)).comma()
+                    .fixed6(data.getDividends().get(i)).newline();
+        }
+        w.flush();
+    }
+
+    /**
+     * Read every line of a series file into {@code data}: metadata lines, the column header and rows, with each
+     * stored adjClose multiplied by {@code adjScale}.
+     */
+    static void read(InputStream in, ChartData data, double adjScale) throws IOException {
+        LineReader r = new LineReader(in);
+        int[] fieldEnds = new int[MAX_FIELDS];
+        while (r.next()) {
+            byte[] b = r.buf;
+            int start = r.start, end = r.end;
+            if (start < end && b[start] == '#') {
+                readMeta(new String(b, start, end - start, StandardCharsets.UTF_8), data);
+                continue;
+            }
+            if (startsWith(b, start, end, "date,")) continue;
+            int fields = 0;
+            for (int p = start; p < end && fields < MAX_FIELDS; p++) {
+                if (b[p] == ',') fieldEnds[fields++] = p;
+            }
+            if (fields < MAX_FIELDS) fieldEnds[fields++] = end;
+            if (fields < 7) continue;
+            // dividend is the optional 8th column; legacy 7-column files default it to 0.
+            double dividend = fields >= 8 ? parseDouble(b, fieldEnds[6] + 1, fieldEnds[7]) : 0.0;
+            data.addRow(
+                    parseLong(b, start, fieldEnds[0]),
+                    parseDouble(b, fieldEnds[0] + 1, fieldEnds[1]),
+                    parseDouble(b, fieldEnds[1] + 1, fieldEnds[2]),
+                    parseDouble(b, fieldEnds[2] + 1, fieldEnds[3]),
+                    parseDouble(b, fieldEnds[3] + 1, fieldEnds[4]),
+                    parseDouble(b, fieldEnds[4] + 1, fieldEnds[5]) * adjScale,
+                    parseLong(b, fieldEnds[5] + 1, fieldEnds[6]),
+                    dividend
+            );
+        }
+    }
+
+    /**
+     * {@code v} in millionths exactly as {@code %.6f} prints it (the JDK rounds its shortest decimal form half
+     * up), so checksums and rescale checks see what a file will hold.
+     */
+    static long micros(double v) {
+        long fast = fastMicros(v);
+        if (fast != Long.MIN_VALUE) return fast;
+        if (!Double.isFinite(v) || Math.abs(v) >= 9e12) return Math.round(v * MICROS);
+        String s = String.format(Locale.US, "%.6f", v);
+        return Long.parseLong(s.replace(".", ""));
+    }
+
+    /** The value a file holds for {@code v} once written at 6 decimals. */
+    static double asWritten(double v) {
+        long fast = fastMicros(v);
+        // copySign keeps the "-0.000000" that %.6f prints for small negatives.
+        return fast != Long.MIN_VALUE ? Math.copySign((double) fast / MICROS, v)
+                : Double.parseDouble(String.format(Locale.US, "%.6f", v));
+    }
+
+    /**
+     * Millionths by plain arithmetic when that provably matches {@code %.6f}: a finite value below
+     * {@link #FAST_LIMIT} whose seventh decimal is not within rounding error of a tie. Otherwise
+     * {@code Long.MIN_VALUE}.
+     */
+    private static long fastMicros(double v) {
+        double a = Math.abs(v);
+        if (!(a < FAST_LIMIT)) return Long.MIN_VALUE;
+        double scaled = a * MICROS;
+        double floor = Math.floor(scaled);
+        double frac = scaled - floor;
+        if (Math.abs(frac - 0.5) < 1e-3) return Long.MIN_VALUE;
+        long m = (long) floor + (frac > 0.5 ? 1 : 0);
+        return v < 0 ? -m : m;
+    }
+
+    private static boolean startsWith(byte[] b, int start, int end, String prefix) {
+        if (end - start < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) if (b[start + i] != prefix.charAt(i)) return false;
+        return true;
+    }
+
+    private static long parseLong(byte[] b, int from, int to) {
+        int p = from;
+        boolean neg = p < to && b[p] == '-';
+        if (neg) p++;
+        if (p == to || to - p > 18) return Long.parseLong(ascii(b, from, to));
+        long v = 0;
+        for (; p < to; p++) {
+            int d = b[p] - '0';
+            if (d < 0 || d > 9) return Long.parseLong(ascii(b, from, to));
+            v = v * 10 + d;
+        }
+        return neg ? -v : v;
+    }
+
+    /**
+     * Plain decimals ({@code -123.456789}) are exact: a mantissa below 2^53 divided by an exact power of ten
+     * is one correctly rounded operation, the same result as {@link Double#parseDouble}.
+     */
+    private static double parseDouble(byte[] b, int from, int to) {
+        int p = from;
+        boolean neg = p < to && b[p] == '-';
+        if (neg) p++;
+        long mantissa = 0;
+        int digits = 0, fraction = -1;
+        boolean sawDigit = false;
+        for (; p < to; p++) {
+            int c = b[p];
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            int d = c - '0';
+            if (d < 0 || d > 9 || digits >= 18) return Double.parseDouble(ascii(b, from, to));
+            mantissa = mantissa * 10 + d;
+            sawDigit = true;
+            if (mantissa != 0) digits++;
+            if (fraction >= 0) fraction++;
+        }
+        if (!sawDigit || mantissa >= (1L << 53) || fraction >= POW10.length) {
+            return Double.parseDouble(ascii(b, from, to));
+        }
+        double v = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+        return neg ? -v : v;
+    }
+
+    private static String ascii(byte[] b, int from, int to) {
+        return new String(b, from, to - from, StandardCharsets.US_ASCII);
+    }
+
+    /** Lines of a stream, as {@code [start, end)} ranges of a growable buffer; {@code \r\n} is accepted. */
+    private static final class LineReader {
+        private final InputStream in;
+        byte[] buf = new byte[BUFFER_BYTES];
+        int start, end;
+        private int pos, limit;
+        private boolean eof;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        boolean next() throws IOException {
+            int scan = pos;
+            while (true) {
+                for (int i = scan; i < limit; i++) {
+                    if (buf[i] == '\n') return line(i, i + 1);
+                }
+                if (eof) return pos < limit && line(limit, limit);
+                scan = limit - pos;
+                fill();
+                scan += pos;
+            }
+        }
+
+        private boolean line(int newline, int nextPos) {
+            start = pos;
+            end = newline > start && buf[newline - 1] == '\r' ? newline - 1 : newline;
+            pos = nextPos;
+            return true;
+        }
+
+        /** Move the pending partial line to the front (growing if it fills the buffer) and read more. */
+        private void fill() throws IOException {
+            int pending = limit - pos;
+            if (pending == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            System.arraycopy(buf, pos, buf, 0, pending);
+            pos = 0;
+            limit = pending;
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) eof = true;
+            else limit += n;
+        }
+    }
+
+    /** Buffered ASCII row output. */
+    private static final class RowWriter {
+        private final OutputStream out;
+        private final byte[] buf = new byte[BUFFER_BYTES];
+        private final byte[] digits = new byte[20];
+        private int len;
+
+        RowWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        RowWriter comma() throws IOException {
+            return put((byte) ',');
+        }
+
+        RowWriter newline() throws IOException {
+            return put((byte) '\n');
+        }
+
+        RowWriter ascii(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) put((byte) s.charAt(i));
+            return this;
+        }
+
+        RowWriter number(long v) throws IOException {
+            if (v == Long.MIN_VALUE) return ascii(Long.toString(v));
+            if (v < 0) {
+                put((byte) '-');
+                v = -v;
+            }
+            int n = 0;
+            do {
+                digits[n++] = (byte) ('0' + v % 10);
+                v /= 10;
+            } while (v != 0);
+            while (n > 0) put(digits[--n]);
+            return this;
+        }
+
+        /** {@code v} exactly as {@code String.format(Locale.US, "%.6f", v)} would print it. */
+        RowWriter fixed6(double v) throws IOException {
+            long m = fastMicros(v);
+            if (m == Long.MIN_VALUE) return ascii(String.format(Locale.US, "%.6f", v));
+            if (v < 0 || (v == 0 && 1 / v < 0)) {
+                put((byte) '-');
+                m = -m;
+            }
+            number(m / MICROS);
+            put((byte) '.');
+            long frac = m % MICROS;
+            for (long div = MICROS / 10; div > 0; div /= 10) put((byte) ('0' + frac / div % 10));
+            return this;
+        }
+
+        private RowWriter put(byte b) throws IOException {
+            if (len == buf.length) flush();
+            buf[len++] = b;
+            return this;
+        }
+
+        void flush() throws IOException {
+            out.write(buf, 0, len);
+            len = 0;
+        }
+    }
+}
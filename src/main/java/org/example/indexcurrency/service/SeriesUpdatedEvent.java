@@ -0,0 +1,10 @@
+package org.example.indexcurrency.service;
+
+/**
+ * Published by {@link CsvCacheService} after a cached series is rewritten (refresh, full fetch, gap repair,
+ * migration), so in-memory caches derived from it can drop their entries.
+ *
+ * @param key     the series' cache key (sanitized symbol; intraday tiers carry an {@code @<interval>} suffix)
+ * @param version the rewritten series' new {@link org.example.indexcurrency.model.ChartData#getVersion() version}
+ */
+public record SeriesUpdatedEvent(String key, long version) {}
@@ -40,10 +40,14 @@ public class YahooFinanceService {
     }
 
     public ChartData fetchIncremental(String symbol, long period1, String interval) {
-        long period2 = System.currentTimeMillis() / 1000;
+        return fetchRange(symbol, period1, System.currentTimeMillis() / 1000, interval);
+    }
+
+    /** Bars between two epoch-second bounds, e.g. to re-fetch a hole in a cached series. */
+    public ChartData fetchRange(String symbol, long period1, long period2, String interval) {
         String url = YAHOO_CHART_URL + symbol + "?period1=" + period1 + "&period2=" + period2
                 + "&interval=" + interval + "&includeAdjustedClose=true&events=div";
-        log.info("Fetching incremental chart from Yahoo: {}", url);
+        log.info("Fetching chart range from Yahoo: {}", url);
         return parseResponse(symbol, fetchWithThrottle(url));
     }
 
@@ -0,0 +1,152 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.ChartData;
+import org.junit.jupiter.api.Test;
+
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Round trips of the resident column codecs; decoded values must match bit for bit. */
+class GorillaCodecTest {
+
+    private static final long DAY = 86400L;
+
+    @Test
+    void longsRoundTrip() {
+        assertLongs();
+        assertLongs(1_700_000_000L);
+        assertLongs(-5L, Long.MAX_VALUE);
+        // Regular weekdays, weekends, a DST hour, then gaps of years and a step back.
+        assertLongs(1_700_000_000L, 1_700_000_000L + DAY, 1_700_000_000L + 2 * DAY, 1_700_000_000L + 5 * DAY,
+                1_700_000_000L + 6 * DAY - 3600, 1_700_000_000L + 7 * DAY, 1_900_000_000L, 1_900_000_000L,
+                1_800_000_000L, 0L, Long.MIN_VALUE / 2, Long.MAX_VALUE / 2);
+        // A change in delta at the edge of every bucket width.
+        long[] edges = {63, 64, -64, -65, 255, 256, -256, -257, 2047, 2048, -2048, -2049, 524287, 524288, -524288,
+                -524289};
+        long[] v = new long[edges.length + 2];
+        v[1] = DAY;
+        long delta = DAY;
+        for (int i = 0; i < edges.length; i++) {
+            delta += edges[i];
+            v[i + 2] = v[i + 1] + delta;
+        }
+        assertLongs(v);
+
+        Random rnd = new Random(1);
+        long[] random = new long[5000];
+        for (int i = 1; i < random.length; i++) {
+            random[i] = random[i - 1] + (rnd.nextInt(10) == 0 ? rnd.nextLong() : DAY);
+        }
+        assertLongs(random);
+    }
+
+    @Test
+    void doublesRoundTrip() {
+        assertDoubles();
+        assertDoubles(101.25);
+        assertDoubles(1.5, 1.5, 1.5, 1.5);
+        assertDoubles(0.0, -0.0, 0.0, -0.0, 0.0);
+        assertDoubles(Double.NaN, 1.0, Double.NaN, Double.NaN, Double.longBitsToDouble(0x7ff8_0000_0000_0001L),
+                Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE);
+        // XORs spanning all 64 bits, and windows that shrink and grow.
+        assertDoubles(1.0, -Double.longBitsToDouble(0x7fff_ffff_ffff_ffffL), 3.0, 3.0000000000000004, 1e-300, 1e300);
+
+        Random rnd = new Random(2);
+        double[] prices = new double[5000];
+        prices[0] = 100;
+        for (int i = 1; i < prices.length; i++) {
+            int k = rnd.nextInt(20);
+            prices[i] = k == 0 ? prices[i - 1] : k == 1 ? Double.NaN
+                    : Math.round(Math.abs(prices[i - 1] * (1 + rnd.nextGaussian() * 0.01)) * 1e6) / 1e6;
+            if (Double.isNaN(prices[i]) && Double.isNaN(prices[i - 1])) prices[i] = 100;
+        }
+        assertDoubles(prices);
+    }
+
+    @Test
+    void compressedSeriesRoundTrip() {
+        assertSeries(series(1));
+
+        ChartData data = series(400);
+        // Single odd rows: NaN, signed zero, a gap of years, a repeat.
+        data.getAdjClose().set(10, Double.NaN);
+        data.getClose().set(11, -0.0);
+        data.getTimestamps().replaceAll(t -> t >= data.getTimestamps().get(200) ? t + 3650 * DAY : t);
+        data.getOpen().set(300, data.getOpen().get(299));
+        assertSeries(data);
+    }
+
+    @Test
+    void compressedSeriesConstantAndSharedColumns() {
+        ChartData data = new ChartData();
+        data.setSymbol("X");
+        for (int i = 0; i < 50; i++) {
+            // open == high == low (shared), close constant 0, volume constant, dividends -0.0 throughout.
+            double p = 100 + i;
+            data.addRow(1_000_000_000L + i * DAY, p, p, p, 0.0, i % 2 == 0 ? 0.0 : -0.0, 7, -0.0);
+        }
+        assertSeries(data);
+    }
+
+    private static void assertLongs(long... values) {
+        long[] out = new long[values.length];
+        GorillaCodec.decodeLongs(LongBuffer.wrap(GorillaCodec.encodeLongs(values, values.length)), values.length,
+                out);
+        assertArrayEquals(values, out);
+    }
+
+    private static void assertDoubles(double... values) {
+        double[] out = new double[values.length];
+        GorillaCodec.decodeDoubles(LongBuffer.wrap(GorillaCodec.encodeDoubles(values, values.length)),
+                values.length, out);
+        assertArrayEquals(bits(values), bits(out));
+    }
+
+    private static ChartData series(int rows) {
+        ChartData data = new ChartData();
+        data.setSymbol("TEST");
+        data.setCurrency("SEK");
+        Random rnd = new Random(rows);
+        double p = 50;
+        long ts = 1_600_000_000L;
+        for (int i = 0; i < rows; i++) {
+            p *= 1 + rnd.nextGaussian() * 0.01;
+            ts += i % 5 == 4 ? 3 * DAY : DAY;
+            data.addRow(ts, p * 0.99, p * 1.01, p * 0.98, p, p * 0.9, rnd.nextInt(1_000_000),
+                    i % 60 == 0 ? 0.25 : 0);
+        }
+        return data;
+    }
+
+    private static void assertSeries(ChartData data) {
+        CompressedSeries compressed = CompressedSeries.of(data);
+        ChartData out = compressed.toChartData();
+        assertEquals(data.getTimestamps().size(), compressed.rows());
+        assertEquals(data.getSymbol(), out.getSymbol());
+        assertEquals(data.getTimestamps(), out.getTimestamps());
+        assertEquals(data.getVolume(), out.getVolume());
+        assertArrayEquals(bits(data.getOpen()), bits(out.getOpen()));
+        assertArrayEquals(bits(data.getHigh()), bits(out.getHigh()));
+        assertArrayEquals(bits(data.getLow()), bits(out.getLow()));
+        assertArrayEquals(bits(data.getClose()), bits(out.getClose()));
+        assertArrayEquals(bits(data.getAdjClose()), bits(out.getAdjClose()));
+        assertArrayEquals(bits(data.getDividends()), bits(out.getDividends()));
+        assertArrayEquals(bits(data.getAdjClose()), bits(compressed.adjClose()));
+        assertArrayEquals(data.getTimestamps().stream().mapToLong(Long::longValue).toArray(),
+                compressed.timestamps());
+    }
+
+    private static long[] bits(List<Double> values) {
+        return bits(values.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    private static long[] bits(double[] values) {
+        long[] out = new long[values.length];
+        for (int i = 0; i < values.length; i++) out[i] = Double.doubleToRawLongBits(values[i]);
+        return out;
+    }
+}
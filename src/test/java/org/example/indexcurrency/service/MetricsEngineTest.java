@@ -0,0 +1,81 @@
+package org.example.indexcurrency.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** The one-pass {@link ReturnAggregate} metrics against direct multi-pass formulas. */
+class MetricsEngineTest {
+
+    private static final double DAYS = PortfolioEngine.TRADING_DAYS;
+
+    @Test
+    void computeMatchesDirectFormulas() {
+        Random rnd = new Random(17);
+        double[] r = new double[750];
+        for (int i = 0; i < r.length; i++) r[i] = rnd.nextGaussian() * 0.012 + 0.0003;
+        double rf = 2.5, target = rf / 100 / DAYS;
+        int n = r.length;
+
+        double mean = 0;
+        for (double v : r) mean += v / n;
+        double m2 = 0, m4 = 0, downside = 0, growth = 1, peak = 1, sumSqDd = 0;
+        for (double v : r) {
+            m2 += (v - mean) * (v - mean);
+            m4 += Math.pow(v - mean, 4);
+            if (v < target) downside += (v - target) * (v - target);
+            growth *= 1 + v;
+            peak = Math.max(peak, growth);
+            sumSqDd += Math.pow((growth - peak) / peak * 100, 2);
+        }
+        double sd = Math.sqrt(m2 / (n - 1));
+        double ulcer = Math.sqrt(sumSqDd / (n + 1));
+        double annualized = (Math.pow(growth, DAYS / (n + 1)) - 1) * 100;
+
+        MetricsEngine.Metrics m = MetricsEngine.compute(r, 10, 20, rf);
+        assertEquals(n, m.count());
+        assertClose((growth - 1) * 100, m.performance());
+        assertClose(sd * Math.sqrt(DAYS) * 100, m.volatility());
+        assertClose((mean * DAYS - rf / 100) / (sd * Math.sqrt(DAYS)), m.sharpe());
+        assertClose((mean - target) * DAYS / (Math.sqrt(downside / n) * Math.sqrt(DAYS)), m.sortino());
+        assertClose((m4 / n) / Math.pow(m2 / n, 2) - 3, m.kurtosis());
+        assertClose(ulcer, m.ulcer());
+        assertClose((annualized - rf) / ulcer, m.upi());
+    }
+
+    @Test
+    void stateRoundTripsAndCopiesContinue() {
+        Random rnd = new Random(19);
+        ReturnAggregate a = new ReturnAggregate(1.5);
+        for (int i = 0; i < 300; i++) a.add(rnd.nextGaussian() * 0.01);
+        ReturnAggregate restored = ReturnAggregate.fromState(a.state()), copy = a.copy();
+        for (int i = 0; i < 50; i++) {
+            double v = rnd.nextGaussian() * 0.01;
+            a.add(v);
+            restored.add(v);
+            copy.add(v);
+        }
+        assertEquals(a.metrics(0, 1), restored.metrics(0, 1));
+        assertEquals(a.metrics(0, 1), copy.metrics(0, 1));
+    }
+
+    @Test
+    void flatOrShortSeriesHaveNoRatios() {
+        MetricsEngine.Metrics one = MetricsEngine.compute(new double[]{0.01}, 0, 1, 0);
+        assertNull(one.volatility());
+        assertNull(one.sharpe());
+        MetricsEngine.Metrics flat = MetricsEngine.compute(new double[]{0, 0, 0, 0, 0}, 0, 1, 0);
+        assertEquals(0.0, flat.volatility());
+        assertNull(flat.sharpe());
+        assertNull(flat.sortino());
+        assertNull(flat.kurtosis());
+        assertNull(flat.upi());
+    }
+
+    private static void assertClose(double expected, Double actual) {
+        assertEquals(expected, actual, Math.abs(expected) * 1e-10);
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.RebalanceFrequency;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/** The drift/rebalance simulation against returns worked out by hand. */
+class PortfolioEngineTest {
+
+    private static final double EPS = 1e-15;
+
+    @Test
+    void driftsThenRebalancesOnTheNewMonth() {
+        // 50% A, 30% B and 20% cash at 2.52% a year, i.e. 1e-4 a day.
+        double[] weights = {50, 30};
+        double dailyCash = 1e-4;
+        ReturnMatrixService.ReturnMatrix matrix = matrix(
+                new long[]{day(2024, 1, 30), day(2024, 1, 31), day(2024, 2, 1)},
+                new double[]{0.10, -0.10, 0.0},
+                new double[]{0.0, 0.20, 0.05});
+
+        double[] monthly = PortfolioEngine.simulate(matrix, weights, 2.52, RebalanceFrequency.MONTHLY);
+        // Day 1 at the target weights; then A, B and cash have grown to 0.55, 0.30 and 0.20002 of the start.
+        double day1 = 0.5 * 0.10 + 0.3 * 0.0 + 0.2 * dailyCash;
+        double total = 0.55 + 0.30 + 0.2 * (1 + dailyCash);
+        double day2 = (0.55 * -0.10 + 0.30 * 0.20 + 0.2 * (1 + dailyCash) * dailyCash) / total;
+        // February: back to the target weights before the day's returns.
+        double day3 = 0.5 * 0.0 + 0.3 * 0.05 + 0.2 * dailyCash;
+        assertArrayEquals(new double[]{day1, day2, day3}, monthly, EPS);
+
+        // Without the reset day 3 uses the drifted weights after day 2.
+        double a = 0.55 * 0.9, b = 0.30 * 1.2, cash = 0.2 * (1 + dailyCash) * (1 + dailyCash);
+        double day3Drifted = (a * 0.0 + b * 0.05 + cash * dailyCash) / (a + b + cash);
+        double[] yearly = PortfolioEngine.simulate(matrix, weights, 2.52, RebalanceFrequency.YEARLY);
+        assertArrayEquals(new double[]{day1, day2, day3Drifted}, yearly, EPS);
+    }
+
+    @Test
+    void dailyRebalancingIsTheWeightedReturn() {
+        ReturnMatrixService.ReturnMatrix matrix = matrix(
+                new long[]{day(2024, 3, 1), day(2024, 3, 4), day(2024, 3, 5)},
+                new double[]{0.01, -0.02, 0.03},
+                new double[]{-0.04, 0.05, 0.0});
+        double[] returns = PortfolioEngine.simulate(matrix, new double[]{60, 40}, 0, RebalanceFrequency.DAILY);
+        assertArrayEquals(new double[]{0.6 * 0.01 + 0.4 * -0.04, 0.6 * -0.02 + 0.4 * 0.05, 0.6 * 0.03}, returns,
+                EPS);
+    }
+
+    static ReturnMatrixService.ReturnMatrix matrix(long[] timestamps, double[]... returns) {
+        List<String> symbols = IntStream.range(0, returns.length).mapToObj(s -> "S" + s).toList();
+        return new ReturnMatrixService.ReturnMatrix(symbols, "USD", timestamps[0] - 86400, timestamps, returns,
+                null);
+    }
+
+    static long day(int year, int month, int dayOfMonth) {
+        return LocalDate.of(year, month, dayOfMonth).atTime(20, 0).toEpochSecond(ZoneOffset.UTC);
+    }
+}
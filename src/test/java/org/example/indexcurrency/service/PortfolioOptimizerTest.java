@@ -0,0 +1,74 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.RebalanceFrequency;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** The optimizer's one-pass candidate metrics against {@link PortfolioEngine#simulate} plus {@link MetricsEngine}. */
+class PortfolioOptimizerTest {
+
+    @Test
+    void evaluateMatchesSimulateAndMetrics() {
+        Random rnd = new Random(7);
+        int assets = 3, days = 400;
+        long[] ts = new long[days];
+        double[][] returns = new double[assets][days];
+        for (int i = 0; i < days; i++) {
+            ts[i] = PortfolioEngineTest.day(2022, 1, 3) + i * 86400L;
+            for (int s = 0; s < assets; s++) returns[s][i] = rnd.nextGaussian() * 0.01 * (s + 1) + 0.0003;
+        }
+        ReturnMatrixService.ReturnMatrix matrix = PortfolioEngineTest.matrix(ts, returns);
+
+        for (RebalanceFrequency rebalance : RebalanceFrequency.values()) {
+            for (double[] weights : new double[][]{{40, 25, 20}, {100, 0, 0}, {0, 0, 0}, {10, 30, 60}}) {
+                assertMetrics(matrix, weights, 3.0, rebalance, 2.5);
+                assertMetrics(matrix, weights, 0.0, rebalance, 0.0);
+            }
+        }
+    }
+
+    @Test
+    void fewerThanTwoReturnsHaveNoMetrics() {
+        ReturnMatrixService.ReturnMatrix matrix = PortfolioEngineTest.matrix(
+                new long[]{PortfolioEngineTest.day(2024, 1, 2)}, new double[]{0.01});
+        double[] out = evaluate(matrix, new double[]{100}, 0, RebalanceFrequency.MONTHLY, 0);
+        for (double v : out) assertEquals(Double.NaN, v);
+    }
+
+    private static void assertMetrics(ReturnMatrixService.ReturnMatrix matrix, double[] weights, double cashRate,
+                                      RebalanceFrequency rebalance, double riskFreeRate) {
+        double[] simulated = PortfolioEngine.simulate(matrix, weights, cashRate, rebalance);
+        MetricsEngine.Metrics m = MetricsEngine.compute(simulated, matrix.start(),
+                matrix.timestamps()[matrix.days() - 1], riskFreeRate);
+        double[] out = evaluate(matrix, weights, cashRate, rebalance, riskFreeRate);
+        String what = rebalance + " " + Arrays.toString(weights) + " cash " + cashRate;
+        assertClose(m.performance(), out[0], what + " performance");
+        assertClose(m.volatility(), out[1], what + " volatility");
+        // A missing Sortino or UPI scores as 0 in the optimizer.
+        assertClose(m.sortino() == null ? 0 : m.sortino(), out[2], what + " sortino");
+        assertClose(m.upi() == null ? 0 : m.upi(), out[3], what + " upi");
+    }
+
+    private static double[] evaluate(ReturnMatrixService.ReturnMatrix matrix, double[] weights, double cashRate,
+                                     RebalanceFrequency rebalance, double riskFreeRate) {
+        int count = matrix.assets();
+        PortfolioOptimizer.Problem problem = new PortfolioOptimizer.Problem(count, matrix.days(),
+                PortfolioEngine.stepReturns(matrix), PortfolioEngine.rebalanceSteps(matrix.timestamps(), rebalance),
+                cashRate, riskFreeRate);
+        double[] out = new double[4];
+        PortfolioOptimizer.evaluate(problem, weights, 0, new double[count], new double[count], out, 0);
+        return out;
+    }
+
+    private static void assertClose(double expected, double actual, String message) {
+        if (Double.isInfinite(expected) || expected == 0) {
+            assertEquals(expected, actual, 1e-12, message);
+        } else {
+            assertEquals(expected, actual, Math.abs(expected) * 1e-9, message);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.indexcurrency.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The sliding-window moments against a direct two-pass computation over each window. */
+class RollingAnalyticsTest {
+
+    @Test
+    void windowMomentsMatchDirectComputation() {
+        Random rnd = new Random(11);
+        int n = 2000;
+        double[] x = new double[n], y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = rnd.nextGaussian() * 0.02 + 0.0004;
+            y[i] = 0.6 * x[i] + rnd.nextGaussian() * 0.01;
+        }
+        for (int window : new int[]{2, 5, 63, 252}) assertWindows(x, y, window);
+    }
+
+    @Test
+    void constantWindowHasNoNegativeVariance() {
+        // A volatile stretch followed by a flat one: after removal the sums should be 0 but carry rounding residue.
+        int n = 300, window = 20;
+        double[] x = new double[n], y = new double[n];
+        Random rnd = new Random(13);
+        for (int i = 0; i < n; i++) {
+            x[i] = i < 150 ? rnd.nextGaussian() * 0.05 : 0.001;
+            y[i] = i < 150 ? rnd.nextGaussian() * 0.05 : -0.002;
+        }
+        RollingAnalytics.WindowMoments m = new RollingAnalytics.WindowMoments();
+        for (int i = 0; i < n; i++) {
+            m.add(x[i], y[i]);
+            if (i >= window) m.remove(x[i - window], y[i - window]);
+            if (i >= 150 + window) {
+                assertTrue(m.varX() >= 0 && m.varX() < 1e-15, "varX " + m.varX());
+                assertTrue(m.varY() >= 0 && m.varY() < 1e-15, "varY " + m.varY());
+                assertEquals(0, m.cov(), 1e-15);
+                assertEquals(0.001, m.meanX(), 1e-15);
+            }
+        }
+        assertWindows(x, y, window);
+    }
+
+    private static void assertWindows(double[] x, double[] y, int window) {
+        // Add/remove rounding accumulates in absolute terms, so the tolerance follows the series' scale.
+        double tol = 1e-12 * scale(x, y);
+        RollingAnalytics.WindowMoments m = new RollingAnalytics.WindowMoments();
+        for (int i = 0; i < x.length; i++) {
+            m.add(x[i], y[i]);
+            if (i >= window) m.remove(x[i - window], y[i - window]);
+            if (i < window - 1) continue;
+            int from = i - window + 1;
+            double meanX = 0, meanY = 0;
+            for (int k = from; k <= i; k++) {
+                meanX += x[k];
+                meanY += y[k];
+            }
+            meanX /= window;
+            meanY /= window;
+            double ssX = 0, ssY = 0, sXY = 0;
+            for (int k = from; k <= i; k++) {
+                ssX += (x[k] - meanX) * (x[k] - meanX);
+                ssY += (y[k] - meanY) * (y[k] - meanY);
+                sXY += (x[k] - meanX) * (y[k] - meanY);
+            }
+            String at = "window " + window + " ending at " + i;
+            assertEquals(meanX, m.meanX(), 1e-15, at);
+            assertEquals(ssX / (window - 1), m.varX(), tol, at);
+            assertEquals(ssY / (window - 1), m.varY(), tol, at);
+            assertEquals(sXY / (window - 1), m.cov(), tol, at);
+            assertEquals(Math.sqrt(m.varX()), m.sdX(), at);
+        }
+    }
+
+    /** The larger variance of the two whole series. */
+    private static double scale(double[] x, double[] y) {
+        return Math.max(variance(x), variance(y));
+    }
+
+    private static double variance(double[] v) {
+        double mean = 0, ss = 0;
+        for (double d : v) mean += d / v.length;
+        for (double d : v) ss += (d - mean) * (d - mean);
+        return ss / (v.length - 1);
+    }
+}
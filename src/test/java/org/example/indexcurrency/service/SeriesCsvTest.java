@@ -0,0 +1,178 @@
+package org.example.indexcurrency.service;
+
+import org.example.indexcurrency.model.ChartData;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The byte-level row codec against the {@code printf}/{@code split} code it replaced ({@link #printfRows},
+ * {@link #splitRead}): written bytes and parsed values must be identical.
+ */
+class SeriesCsvTest {
+
+    private static final double[] EDGE_VALUES = {
+            0.0, -0.0, 1.0, -1.0, 123.456789, -123.456789, 0.1, -0.1,
+            // Rounding boundary of the sixth decimal: exact ties, just below and just above.
+            0.0000005, -0.0000005, 1.0000005, 2.5e-6, 0.0000015, 0.0000025, 999999.9999995, 0.1234565,
+            Math.nextDown(0.0000005), Math.nextUp(0.0000005), Math.nextDown(1.0000005), Math.nextUp(1.0000005),
+            // Values that round to (negative) zero.
+            4e-7, -4e-7, -1e-12,
+            // Exponent range: tiny, huge, around the fast-path limit and beyond a long's millionths.
+            1e-7, 1e-300, Double.MIN_VALUE, 999999.999999, 1e6, -1e6, 1e12, 9e12, 1e15, 9.99e15, 1e20, -1e20,
+            Double.MAX_VALUE, -Double.MAX_VALUE,
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+    @Test
+    void writesLikePrintf() throws IOException {
+        ChartData data = new ChartData();
+        data.setSymbol("T");
+        long ts = -86400L;
+        for (double v : EDGE_VALUES) {
+            data.addRow(ts, v, -v, v / 3, v * 7, v, (long) (ts * 3.0), v);
+            ts += 86400;
+        }
+        Random rnd = new Random(5);
+        for (int i = 0; i < 20000; i++) {
+            double scale = Math.pow(10, rnd.nextInt(14) - 6);
+            double v = (rnd.nextDouble() * 2 - 1) * scale;
+            // Every fourth value sits on or next to a seventh-decimal tie.
+            if (i % 4 == 0) v = (Math.floor(v * 1e6) + 0.5) / 1e6 + (rnd.nextInt(3) - 1) * Math.ulp(v);
+            data.addRow(ts++, v, Math.abs(v), -v, v * 1e-3, v * 1e3, rnd.nextLong(), rnd.nextInt(5) == 0 ? v : 0);
+        }
+        int n = data.getTimestamps().size();
+        assertEquals(printfRows(data, 0, n), codecRows(data, 0, n));
+        assertEquals(printfRows(data, 3, 17), codecRows(data, 3, 17));
+    }
+
+    @Test
+    void microsAndAsWrittenMatchPrintf() {
+        for (double v : EDGE_VALUES) {
+            if (!Double.isFinite(v)) continue;
+            String printed = String.format(Locale.US, "%.6f", v);
+            assertEquals(Double.parseDouble(printed), SeriesCsv.asWritten(v), printed);
+            if (Math.abs(v) < 9e12) {
+                assertEquals(Long.parseLong(printed.replace(".", "")), SeriesCsv.micros(v), printed);
+            }
+        }
+    }
+
+    @Test
+    void readsLikeSplit() throws IOException {
+        StringBuilder sb = new StringBuilder("# symbol=T\n# currency=SEK\n").append(SeriesCsv.COLUMNS).append('\n');
+        sb.append("1700000000,1.5,-2.25,0.000001,-0.000000,123456.789012,1000,0.5\n");
+        sb.append("-86400,NaN,Infinity,-Infinity,1.5E-7,-2e300,-7,1e-3\n");
+        // Legacy 7-column row (dividend 0), integers, a leading '+', long mantissas and too few fields.
+        sb.append("1700086400,100,+3,0.123456789012345678,12345678901234567890,5.,42\r\n");
+        sb.append("1,2,3\n");
+        sb.append("1700172800,999999.9999995,1e6,9007199254740993,0.1,0.2,9223372036854775807,0\n");
+        Random rnd = new Random(9);
+        for (int i = 0; i < 5000; i++) {
+            sb.append(rnd.nextLong()).append(',');
+            for (int f = 0; f < 5; f++) {
+                sb.append(String.format(Locale.US, "%.6f", (rnd.nextDouble() - 0.5) * Math.pow(10, rnd.nextInt(12))))
+                        .append(',');
+            }
+            sb.append(rnd.nextInt()).append(',')
+                    .append(String.format(Locale.US, "%.6f", rnd.nextDouble())).append('\n');
+        }
+        String text = sb.toString();
+        for (double adjScale : new double[]{1.0, 0.987654321}) {
+            ChartData expected = splitRead(text, adjScale), actual = codecRead(text, adjScale);
+            assertEquals(expected.getSymbol(), actual.getSymbol());
+            assertEquals(expected.getCurrency(), actual.getCurrency());
+            assertSameRows(expected, actual);
+        }
+    }
+
+    @Test
+    void rejectsMalformedFieldsLikeSplit() {
+        for (String row : List.of("1,,2,3,4,5,6,7", "1,2,3,4,5,6,,7", "x,1,2,3,4,5,6,7", "1,1..5,2,3,4,5,6,7")) {
+            String text = SeriesCsv.COLUMNS + "\n" + row + "\n";
+            assertThrows(NumberFormatException.class, () -> splitRead(text, 1.0), row);
+            assertThrows(NumberFormatException.class, () -> codecRead(text, 1.0), row);
+        }
+    }
+
+    @Test
+    void roundTripsWhatItWrites() throws IOException {
+        ChartData data = new ChartData();
+        data.setSymbol("T");
+        Random rnd = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            double v = (rnd.nextDouble() - 0.3) * Math.pow(10, rnd.nextInt(10) - 3);
+            data.addRow(1_000_000_000L + i * 86400L, v, v, v, v, v, i, i % 7 == 0 ? Double.NaN : v);
+        }
+        String text = SeriesCsv.COLUMNS + "\n" + codecRows(data, 0, 2000).substring(SeriesCsv.COLUMNS.length() + 1);
+        assertSameRows(splitRead(text, 1.0), codecRead(text, 1.0));
+    }
+
+    /** The replaced writer: {@code PrintWriter.printf} per row (with {@code \n} line ends). */
+    private static String printfRows(ChartData data, int from, int to) {
+        StringBuilder sb = new StringBuilder(SeriesCsv.COLUMNS).append('\n');
+        for (int i = from; i < to; i++) {
+            sb.append(String.format(Locale.US, "%d,%.6f,%.6f,%.6f,%.6f,%.6f,%d,%.6f\n",
+                    data.getTimestamps().get(i), data.getOpen().get(i), data.getHigh().get(i), data.getLow().get(i),
+                    data.getClose().get(i), data.getAdjClose().get(i), data.getVolume().get(i),
+                    data.getDividends().get(i)));
+        }
+        return sb.toString();
+    }
+
+    private static String codecRows(ChartData data, int from, int to) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SeriesCsv.writeRows(out, data, from, to);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    /** The replaced reader: {@code String.split} and {@code Double.parseDouble} per field. */
+    private static ChartData splitRead(String text, double adjScale) throws IOException {
+        ChartData data = SeriesCsv.newSeries("?");
+        BufferedReader br = new BufferedReader(new StringReader(text));
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (SeriesCsv.readMeta(line, data) || line.startsWith("date,")) continue;
+            String[] parts = line.split(",");
+            if (parts.length >= 7) {
+                double dividend = parts.length >= 8 ? Double.parseDouble(parts[7]) : 0.0;
+                data.addRow(Long.parseLong(parts[0]), Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                        Double.parseDouble(parts[3]), Double.parseDouble(parts[4]),
+                        Double.parseDouble(parts[5]) * adjScale, Long.parseLong(parts[6]), dividend);
+            }
+        }
+        return data;
+    }
+
+    private static ChartData codecRead(String text, double adjScale) throws IOException {
+        ChartData data = SeriesCsv.newSeries("?");
+        SeriesCsv.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)), data, adjScale);
+        return data;
+    }
+
+    private static void assertSameRows(ChartData expected, ChartData actual) {
+        assertEquals(expected.getTimestamps(), actual.getTimestamps());
+        assertEquals(expected.getVolume(), actual.getVolume());
+        assertArrayEquals(bits(expected.getOpen()), bits(actual.getOpen()));
+        assertArrayEquals(bits(expected.getHigh()), bits(actual.getHigh()));
+        assertArrayEquals(bits(expected.getLow()), bits(actual.getLow()));
+        assertArrayEquals(bits(expected.getClose()), bits(actual.getClose()));
+        assertArrayEquals(bits(expected.getAdjClose()), bits(actual.getAdjClose()));
+        assertArrayEquals(bits(expected.getDividends()), bits(actual.getDividends()));
+    }
+
+    private static long[] bits(List<Double> values) {
+        return values.stream().mapToLong(Double::doubleToRawLongBits).toArray();
+    }
+}